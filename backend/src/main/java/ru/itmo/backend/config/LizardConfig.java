@@ -0,0 +1,44 @@
+package ru.itmo.backend.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import ru.itmo.backend.config.metrics.MetricsService;
+import ru.itmo.backend.evaluator.lizard.LizardResultCache;
+import ru.itmo.backend.evaluator.lizard.ShardedLizardRunner;
+import ru.itmo.backend.service.analysis.AnalysisProperties;
+import ru.itmo.backend.service.analysis.BlobMetricsCache;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Configuration of Lizard execution.
+ * A single fixed pool is shared by all analyses, so the total number of Lizard
+ * processes stays bounded regardless of how many requests are evaluated at once.
+ */
+@Configuration
+public class LizardConfig {
+
+    @Bean
+    public ShardedLizardRunner shardedLizardRunner(AnalysisProperties analysisProperties, MetricsService metricsService,
+                                                   BlobMetricsCache blobMetricsCache) {
+        AnalysisProperties.Lizard lizard = analysisProperties.getLizard();
+        int parallelism = Math.max(1, lizard.getParallelism());
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, new CustomizableThreadFactory("lizard-"));
+        LizardResultCache cache = analysisProperties.getBlobCache().isEnabled() ? blobMetricsCache : LizardResultCache.NONE;
+
+        return new ShardedLizardRunner(executor, parallelism, lizard.getMinShardBytes(), new ShardedLizardRunner.ShardListener() {
+            @Override
+            public void onShardsPlanned(int shardCount) {
+                metricsService.recordLizardShards(shardCount);
+            }
+
+            @Override
+            public void onShardCompleted(int fileCount, long bytes, Duration duration) {
+                metricsService.recordLizardShardDuration(duration);
+            }
+        }, cache);
+    }
+}
@@ -1,10 +1,17 @@
 package ru.itmo.backend.config.metrics;
 
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Service for tracking application metrics.
  * Provides counters and timers for monitoring operations.
@@ -21,8 +28,24 @@ public class MetricsService {
     private final Timer cloneTimer;
     private final Timer analysisTimer;
     private final Timer gitPullTimer;
+    private final Counter metricsCacheHitCounter;
+    private final Counter metricsCacheMissCounter;
+    private final Counter incrementalAnalysisCounter;
+    private final Counter coalescedAnalysisCounter;
+    private final Counter preAnalysisCounter;
+    private final DistributionSummary incrementalChangedFiles;
+    private final DistributionSummary lizardShards;
+    private final Timer lizardShardTimer;
+    private final AtomicInteger instanceQueueLength = new AtomicInteger();
+    private final Timer instanceWaitTimer;
+    private final Counter blobCacheHitCounter;
+    private final Counter blobCacheMissCounter;
+    private final MeterRegistry meterRegistry;
+    private final Map<Long, AtomicInteger> instancePoolSizes = new ConcurrentHashMap<>();
 
     public MetricsService(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+
         this.cloneCounter = Counter.builder("babel.repository.clone.total")
                 .description("Total number of repository clone operations")
                 .register(meterRegistry);
@@ -58,6 +81,59 @@ public class MetricsService {
         this.gitPullTimer = Timer.builder("babel.repository.pull.duration")
                 .description("Duration of git pull operations")
                 .register(meterRegistry);
+
+        this.metricsCacheHitCounter = Counter.builder("babel.analysis.cache.hits")
+                .description("Number of commit metrics requests served from the metrics cache")
+                .register(meterRegistry);
+
+        this.metricsCacheMissCounter = Counter.builder("babel.analysis.cache.misses")
+                .description("Number of commit metrics requests that required a full evaluation")
+                .register(meterRegistry);
+
+        this.incrementalAnalysisCounter = Counter.builder("babel.analysis.incremental.total")
+                .description("Number of commits evaluated as a delta over an already evaluated ancestor")
+                .register(meterRegistry);
+
+        this.coalescedAnalysisCounter = Counter.builder("babel.analysis.coalesced")
+                .description("Number of commit metrics requests that joined an evaluation already in progress")
+                .register(meterRegistry);
+
+        this.preAnalysisCounter = Counter.builder("babel.analysis.preanalysis.total")
+                .description("Number of branch heads analyzed in the background after a clone or update")
+                .register(meterRegistry);
+
+        this.incrementalChangedFiles = DistributionSummary.builder("babel.analysis.incremental.changed.files")
+                .description("Number of files re-evaluated by incremental commit analysis")
+                .register(meterRegistry);
+
+        this.lizardShards = DistributionSummary.builder("babel.lizard.shards")
+                .description("Number of Lizard processes a single evaluation was split into")
+                .register(meterRegistry);
+
+        this.lizardShardTimer = Timer.builder("babel.lizard.shard.duration")
+                .description("Duration of a single Lizard process run")
+                .register(meterRegistry);
+
+        Gauge.builder("babel.instances.queue.length", instanceQueueLength, AtomicInteger::get)
+                .description("Number of requests waiting for a free project instance")
+                .register(meterRegistry);
+
+        this.instanceWaitTimer = Timer.builder("babel.instances.wait.duration")
+                .description("Time spent acquiring a project instance")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+
+        this.blobCacheHitCounter = Counter.builder("babel.lizard.blob.cache.hits")
+                .description("Number of files whose Lizard results were served from the blob cache")
+                .register(meterRegistry);
+
+        this.blobCacheMissCounter = Counter.builder("babel.lizard.blob.cache.misses")
+                .description("Number of files that had to be analyzed by Lizard")
+                .register(meterRegistry);
+
+        Gauge.builder("babel.lizard.blob.cache.hit.ratio", this, MetricsService::blobCacheHitRatio)
+                .description("Share of files served from the blob cache")
+                .register(meterRegistry);
     }
 
     public void recordClone(boolean success, Runnable operation) {
@@ -119,5 +195,78 @@ public class MetricsService {
             gitPullErrorCounter.increment();
         }
     }
-}
 
+    public void recordMetricsCacheHit() {
+        metricsCacheHitCounter.increment();
+    }
+
+    public void recordMetricsCacheMiss() {
+        metricsCacheMissCounter.increment();
+    }
+
+    public void recordIncrementalAnalysis(int changedFiles) {
+        incrementalAnalysisCounter.increment();
+        incrementalChangedFiles.record(changedFiles);
+    }
+
+    public void recordAnalysisCoalesced() {
+        coalescedAnalysisCounter.increment();
+    }
+
+    public void recordPreAnalysis() {
+        preAnalysisCounter.increment();
+    }
+
+    public void recordLizardShards(int shardCount) {
+        lizardShards.record(shardCount);
+    }
+
+    public void recordLizardShardDuration(Duration duration) {
+        lizardShardTimer.record(duration);
+    }
+
+    public void recordInstanceQueued() {
+        instanceQueueLength.incrementAndGet();
+    }
+
+    public void recordInstanceDequeued() {
+        instanceQueueLength.decrementAndGet();
+    }
+
+    public void recordInstanceWait(Duration duration) {
+        instanceWaitTimer.record(duration);
+    }
+
+    public void recordBlobCacheHit() {
+        blobCacheHitCounter.increment();
+    }
+
+    public void recordBlobCacheMiss() {
+        blobCacheMissCounter.increment();
+    }
+
+    private double blobCacheHitRatio() {
+        double total = blobCacheHitCounter.count() + blobCacheMissCounter.count();
+        return total == 0 ? 0 : blobCacheHitCounter.count() / total;
+    }
+
+    public void recordInstancePoolSize(Long projectId, int size) {
+        instancePoolSizes.computeIfAbsent(projectId, id -> {
+            AtomicInteger holder = new AtomicInteger();
+            Gauge.builder("babel.instances.pool.size", holder, AtomicInteger::get)
+                    .description("Number of instances of a project")
+                    .tag("project", String.valueOf(id))
+                    .register(meterRegistry);
+            return holder;
+        }).set(size);
+    }
+
+    public void removeInstancePool(Long projectId) {
+        if (instancePoolSizes.remove(projectId) != null) {
+            meterRegistry.find("babel.instances.pool.size")
+                    .tag("project", String.valueOf(projectId))
+                    .meters()
+                    .forEach(meterRegistry::remove);
+        }
+    }
+}
@@ -5,7 +5,9 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.eclipse.jgit.lib.ObjectId;
 import org.springframework.web.bind.annotation.*;
+import ru.itmo.backend.dto.response.analysis.CommitDiffDTO;
 import ru.itmo.backend.service.analysis.CodeAnalysisService;
 import ru.itmo.backend.service.downloader.ProjectAccessService;
 
@@ -53,4 +55,13 @@ public class CodeAnalysisController {
 
         return mapper.writeValueAsString(response);
     }
+
+    @Operation(summary = "Compare two commits", description = "Returns per-method metric changes between two commits, evaluating only changed files")
+    @GetMapping("/project/{projectId}/diff")
+    public CommitDiffDTO analyzeDiff(@PathVariable Long projectId, @RequestParam String from, @RequestParam String to) throws Exception {
+        if (!ObjectId.isId(from) || !ObjectId.isId(to)) {
+            throw new IllegalArgumentException("Full commit SHAs are required");
+        }
+        return codeAnalysisService.analyzeDiff(projectAccessService.getById(projectId), from, to);
+    }
 }
@@ -0,0 +1,33 @@
+package ru.itmo.backend.controller;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Strong entity tags for responses determined by a few values, such as a commit SHA and request parameters.
+ * Computed before the response itself, so that {@code If-None-Match} can be answered without doing the work.
+ */
+final class ETags {
+
+    private ETags() {
+    }
+
+    /**
+     * @param parts values the response depends on; {@code null}s are allowed
+     * @return unquoted entity tag, as expected by {@link org.springframework.web.context.request.WebRequest#checkNotModified(String)}
+     */
+    static String of(Object... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Object part : parts) {
+                digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest(), 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
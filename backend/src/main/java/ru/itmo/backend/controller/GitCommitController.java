@@ -2,33 +2,69 @@ package ru.itmo.backend.controller;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.itmo.backend.dto.response.analysis.ColumnarCommitMetricsDTO;
 import ru.itmo.backend.dto.response.analysis.CommitMetricsDTO;
 import ru.itmo.backend.dto.response.commit.*;
+import ru.itmo.backend.dto.response.job.JobDTO;
 import ru.itmo.backend.entity.GitProjectEntity;
+import ru.itmo.backend.evaluator.model.ClassMetric;
 import ru.itmo.backend.service.GitCommitService;
+import ru.itmo.backend.service.analysis.AnalysisJobService;
 import ru.itmo.backend.service.analysis.CodeAnalysisService;
+import ru.itmo.backend.service.analysis.TimelineService;
 import ru.itmo.backend.service.downloader.ProjectAccessService;
+import ru.itmo.backend.service.jobs.Job;
 
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Controller exposing endpoints to list branches and commits with pagination.
+ * <p>
+ * GET responses carry strong ETags computed before the response itself: from ref tips for branch and commit listings,
+ * from the commit and the request parameters for metrics. A matching {@code If-None-Match} is answered with 304
+ * without listing commits or evaluating metrics.
  */
 @RestController
 @RequestMapping("/projects")
 @Tag(name = "git-commit-controller")
 public class GitCommitController {
 
+    // Responses may change with the branch (e.g. commit numbers), so clients revalidate them with the ETag
+    private static final CacheControl REVALIDATE = CacheControl.noCache();
+
     private final GitCommitService commitService;
     private final ProjectAccessService projectAccessService;
     private final CodeAnalysisService codeAnalysisService;
+    private final AnalysisJobService analysisJobService;
+    private final TimelineService timelineService;
+    private final long streamTimeoutMillis;
 
-    public GitCommitController(GitCommitService commitService, ProjectAccessService projectAccessService, CodeAnalysisService codeAnalysisService) {
+    public GitCommitController(GitCommitService commitService, ProjectAccessService projectAccessService,
+                               CodeAnalysisService codeAnalysisService, AnalysisJobService analysisJobService,
+                               TimelineService timelineService,
+                               @Value("${jobs.stream-timeout-ms:1800000}") long streamTimeoutMillis) {
         this.commitService = commitService;
         this.projectAccessService = projectAccessService;
         this.codeAnalysisService = codeAnalysisService;
+        this.analysisJobService = analysisJobService;
+        this.timelineService = timelineService;
+        this.streamTimeoutMillis = streamTimeoutMillis;
     }
 
     /**
@@ -36,10 +72,13 @@ public class GitCommitController {
      */
     @Operation(operationId = "getProjectBranches")
     @GetMapping("/{projectId}/branches")
-    public ResponseEntity<BranchResponseDTO> getBranches(@PathVariable Long projectId) throws Exception {
+    public ResponseEntity<BranchResponseDTO> getBranches(@PathVariable Long projectId, WebRequest request) throws Exception {
         GitProjectEntity project = projectAccessService.getById(projectId);
         List<BranchDTO> branches = commitService.listBranches(project);
-        return ResponseEntity.ok(new BranchResponseDTO(branches));
+        if (request.checkNotModified(ETags.of("branches", branches))) {
+            return notModified();
+        }
+        return ResponseEntity.ok().cacheControl(REVALIDATE).body(new BranchResponseDTO(branches));
     }
 
     /**
@@ -49,12 +88,18 @@ public class GitCommitController {
     @GetMapping("/{projectId}/branches/{branch}")
     public ResponseEntity<BranchDTO> getBranch(
             @PathVariable Long projectId,
-            @PathVariable String branch
+            @PathVariable String branch,
+            WebRequest request
     ) throws Exception {
         GitProjectEntity project = projectAccessService.getById(projectId);
-        return commitService.getBranch(project, branch)
-                .map(ResponseEntity::ok)
-                .orElse(ResponseEntity.notFound().build());
+        Optional<BranchDTO> branchDTO = commitService.getBranch(project, branch);
+        if (branchDTO.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (request.checkNotModified(ETags.of("branch", branchDTO.get()))) {
+            return notModified();
+        }
+        return ResponseEntity.ok().cacheControl(REVALIDATE).body(branchDTO.get());
     }
 
     /**
@@ -66,11 +111,15 @@ public class GitCommitController {
             @PathVariable Long projectId,
             @PathVariable String branch,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "20") int pageSize
+            @RequestParam(defaultValue = "20") int pageSize,
+            WebRequest request
     ) throws Exception {
         GitProjectEntity repo = projectAccessService.getById(projectId);
+        if (request.checkNotModified(ETags.of("commits", commitService.getBranchTip(repo, branch), page, pageSize))) {
+            return notModified();
+        }
         PageResponse<CommitDTO> response = commitService.listCommits(repo, branch, page, pageSize);
-        return ResponseEntity.ok(new PageResponseCommitDTO(
+        return ResponseEntity.ok().cacheControl(REVALIDATE).body(new PageResponseCommitDTO(
                 response.page(),
                 response.pageSize(),
                 response.total(),
@@ -86,20 +135,133 @@ public class GitCommitController {
     public ResponseEntity<CommitDTO> getCommit(
             @PathVariable Long projectId,
             @PathVariable String branch,
-            @PathVariable String sha
+            @PathVariable String sha,
+            WebRequest request
     ) throws Exception {
         GitProjectEntity project = projectAccessService.getById(projectId);
+        if (request.checkNotModified(ETags.of("commit", commitService.getBranchTip(project, branch), sha))) {
+            return notModified();
+        }
         return commitService.getCommit(project, branch, sha)
-                .map(ResponseEntity::ok)
+                .map(commit -> ResponseEntity.ok().cacheControl(REVALIDATE).body(commit))
                 .orElse(ResponseEntity.notFound().build());
     }
 
     /**
      * Returns metrics for a specific commit.
+     * For zoomed out views the tree can be limited to {@code depth} levels below the root,
+     * and packages and classes with total NLOC below {@code minNloc} can be collapsed into "other" nodes.
      */
     @Operation(operationId = "getCommitMetrics")
     @GetMapping("/{projectId}/branches/{branch}/commits/{sha}/metrics")
     public ResponseEntity<CommitMetricsDTO> getCommitMetrics(
+            @PathVariable Long projectId,
+            @PathVariable String branch,
+            @PathVariable String sha,
+            @RequestParam(required = true) List<String> metrics,
+            @RequestParam(required = false) Integer depth,
+            @RequestParam(required = false) Integer minNloc,
+            WebRequest request
+    ) throws Exception {
+        GitProjectEntity project = projectAccessService.getById(projectId);
+        CommitDTO commit = commitService.getCommit(project, branch, sha)
+                .orElseThrow(() -> new IllegalArgumentException("Commit not found: " + sha));
+        if (request.checkNotModified(metricsETag(commit, "tree", metrics, depth, minNloc))) {
+            return notModified();
+        }
+
+        CommitMetricsDTO metricsDTO = codeAnalysisService.getCommitMetrics(project, commit, metrics, depth, minNloc);
+        return ResponseEntity.ok().cacheControl(REVALIDATE).varyBy(HttpHeaders.ACCEPT).body(metricsDTO);
+    }
+
+    /**
+     * Returns metrics of one package of a commit, or of one class of it, for drilling into the tree
+     * returned by {@link #getCommitMetrics}. {@code path} is the full package name, as given by the {@code path} field
+     * of a package node; node names are relative to their parent once package chains are collapsed.
+     * {@code depth} and {@code minNloc} apply to the subtree.
+     */
+    @Operation(operationId = "getCommitSubtreeMetrics")
+    @GetMapping("/{projectId}/branches/{branch}/commits/{sha}/metrics/subtree")
+    public ResponseEntity<CommitMetricsDTO> getCommitSubtreeMetrics(
+            @PathVariable Long projectId,
+            @PathVariable String branch,
+            @PathVariable String sha,
+            @RequestParam(required = true) List<String> metrics,
+            @RequestParam(required = true) String path,
+            @RequestParam(required = false) String className,
+            @RequestParam(required = false) Integer depth,
+            @RequestParam(required = false) Integer minNloc,
+            WebRequest request
+    ) throws Exception {
+        GitProjectEntity project = projectAccessService.getById(projectId);
+        CommitDTO commit = commitService.getCommit(project, branch, sha)
+                .orElseThrow(() -> new IllegalArgumentException("Commit not found: " + sha));
+        if (request.checkNotModified(metricsETag(commit, "subtree", metrics, path, className, depth, minNloc))) {
+            return notModified();
+        }
+
+        CommitMetricsDTO metricsDTO = codeAnalysisService.getSubtreeMetrics(project, commit, metrics, path, className, depth, minNloc);
+        return ResponseEntity.ok().cacheControl(REVALIDATE).body(metricsDTO);
+    }
+
+    /**
+     * Returns metrics for a specific commit in columnar form.
+     * Served instead of {@link #getCommitMetrics} when the client accepts {@value ColumnarCommitMetricsDTO#MEDIA_TYPE}.
+     */
+    @Operation(operationId = "getCommitMetricsColumnar")
+    @GetMapping(value = "/{projectId}/branches/{branch}/commits/{sha}/metrics", produces = ColumnarCommitMetricsDTO.MEDIA_TYPE)
+    public ResponseEntity<ColumnarCommitMetricsDTO> getCommitMetricsColumnar(
+            @PathVariable Long projectId,
+            @PathVariable String branch,
+            @PathVariable String sha,
+            @RequestParam(required = true) List<String> metrics,
+            WebRequest request
+    ) throws Exception {
+        GitProjectEntity project = projectAccessService.getById(projectId);
+        CommitDTO commit = commitService.getCommit(project, branch, sha)
+                .orElseThrow(() -> new IllegalArgumentException("Commit not found: " + sha));
+        if (request.checkNotModified(metricsETag(commit, "columnar", metrics))) {
+            return notModified();
+        }
+
+        ColumnarCommitMetricsDTO metricsDTO = codeAnalysisService.getCommitMetricsColumnar(project, commit, metrics);
+        return ResponseEntity.ok().cacheControl(REVALIDATE).varyBy(HttpHeaders.ACCEPT).body(metricsDTO);
+    }
+
+    /**
+     * Returns metrics for a specific commit like {@link #getCommitMetrics}, streaming the JSON as it is written
+     * instead of building the whole response in memory first. Intended for very large repositories.
+     */
+    @Operation(operationId = "streamCommitMetrics")
+    @GetMapping(value = "/{projectId}/branches/{branch}/commits/{sha}/metrics/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamCommitMetrics(
+            @PathVariable Long projectId,
+            @PathVariable String branch,
+            @PathVariable String sha,
+            @RequestParam(required = true) List<String> metrics,
+            WebRequest request
+    ) throws Exception {
+        GitProjectEntity project = projectAccessService.getById(projectId);
+        CommitDTO commit = commitService.getCommit(project, branch, sha)
+                .orElseThrow(() -> new IllegalArgumentException("Commit not found: " + sha));
+        if (request.checkNotModified(metricsETag(commit, "stream", metrics))) {
+            return notModified();
+        }
+
+        // Evaluated before the response starts, so that failures still produce a proper error status
+        codeAnalysisService.validateMetrics(project, metrics);
+        Map<String, ClassMetric> classMetrics = codeAnalysisService.getClassMetrics(project, commit.sha());
+        StreamingResponseBody body = out -> codeAnalysisService.writeCommitMetrics(project, commit, classMetrics, metrics, out);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).cacheControl(REVALIDATE).body(body);
+    }
+
+    /**
+     * Starts metrics evaluation of a commit in the background.
+     * The result is available from {@code /jobs/{jobId}}; completion is streamed by {@code /jobs/{jobId}/events}.
+     */
+    @Operation(operationId = "startCommitMetricsJob")
+    @PostMapping("/{projectId}/branches/{branch}/commits/{sha}/metrics/jobs")
+    public ResponseEntity<JobDTO> startCommitMetricsJob(
             @PathVariable Long projectId,
             @PathVariable String branch,
             @PathVariable String sha,
@@ -108,8 +270,68 @@ public class GitCommitController {
         GitProjectEntity project = projectAccessService.getById(projectId);
         CommitDTO commit = commitService.getCommit(project, branch, sha)
                 .orElseThrow(() -> new IllegalArgumentException("Commit not found: " + sha));
-        
-        CommitMetricsDTO metricsDTO = codeAnalysisService.getCommitMetrics(project, commit, metrics);
-        return ResponseEntity.ok(metricsDTO);
+
+        codeAnalysisService.validateMetrics(project, metrics);
+        Job<CommitMetricsDTO> job = analysisJobService.submit(project, commit, metrics);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(job.toDto());
+    }
+
+    /**
+     * Streams aggregate metrics of every {@code stride}-th commit of a branch, counting back from its tip.
+     * Each computed commit is sent as a {@code point} event as soon as it is ready; points may arrive out of
+     * history order. The stream ends with a {@code finished} event carrying the number of points,
+     * or a {@code failed} event carrying the error message.
+     */
+    @Operation(operationId = "streamBranchTimeline")
+    @GetMapping(value = "/{projectId}/branches/{branch}/timeline", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamTimeline(
+            @PathVariable Long projectId,
+            @PathVariable String branch,
+            @RequestParam(defaultValue = "10") int stride
+    ) throws Exception {
+        GitProjectEntity project = projectAccessService.getById(projectId);
+        List<CommitDTO> commits = commitService.sampleCommits(project, branch, stride, timelineService.getMaxPoints());
+
+        SseEmitter emitter = new SseEmitter(streamTimeoutMillis);
+        AtomicInteger sent = new AtomicInteger();
+        CompletableFuture<Void> timeline = timelineService.computeTimeline(project, commits, point -> {
+            try {
+                emitter.send(SseEmitter.event().name("point").data(point, MediaType.APPLICATION_JSON));
+                sent.incrementAndGet();
+            } catch (IOException | IllegalStateException e) {
+                // Client went away; the timeline is cancelled by the emitter callbacks
+            }
+        });
+
+        timeline.whenComplete((ignored, error) -> {
+            try {
+                if (error == null) {
+                    emitter.send(SseEmitter.event().name("finished").data(sent.get()));
+                } else {
+                    emitter.send(SseEmitter.event().name("failed").data(String.valueOf(error.getMessage())));
+                }
+                emitter.complete();
+            } catch (IOException | IllegalStateException e) {
+                // Client went away
+            }
+        });
+
+        emitter.onCompletion(() -> timeline.cancel(false));
+        emitter.onTimeout(() -> timeline.cancel(false));
+        emitter.onError(e -> timeline.cancel(false));
+        return emitter;
+    }
+
+    /**
+     * ETag of a response derived from metrics of a commit. Evaluation results of a commit never change
+     * (short of a new {@link CodeAnalysisService#METRICS_VERSION}), but the commit number does when the branch moves.
+     */
+    private static String metricsETag(CommitDTO commit, String representation, Object... parameters) {
+        return ETags.of(CodeAnalysisService.METRICS_VERSION, representation, commit.sha(), commit.number(),
+                Arrays.asList(parameters));
+    }
+
+    private static <T> ResponseEntity<T> notModified() {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(REVALIDATE).build();
     }
 }
@@ -3,10 +3,15 @@ package ru.itmo.backend.controller;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import ru.itmo.backend.dto.request.gitproject.ProjectRequestDTO;
 import ru.itmo.backend.dto.response.gitproject.ProjectResponseDTO;
+import ru.itmo.backend.dto.response.job.JobDTO;
 import ru.itmo.backend.service.downloader.GitProjectService;
+import ru.itmo.backend.service.jobs.Job;
+import ru.itmo.backend.service.jobs.JobService;
 
 @RestController
 @RequestMapping("/projects")
@@ -14,9 +19,11 @@ import ru.itmo.backend.service.downloader.GitProjectService;
 public class GitProjectController {
 
     private final GitProjectService gitProjectService;
+    private final JobService jobService;
 
-    public GitProjectController(GitProjectService gitProjectService) {
+    public GitProjectController(GitProjectService gitProjectService, JobService jobService) {
         this.gitProjectService = gitProjectService;
+        this.jobService = jobService;
     }
 
     @Operation(summary = "Clone or retrieve a repository", description = "Clones the project if not cached or retrieves existing cached project", operationId = "cloneProject")
@@ -25,4 +32,14 @@ public class GitProjectController {
         // Validation is handled by @Valid annotation and ProjectRequestDTO constraints
         return gitProjectService.getOrCloneProject(request.url());
     }
-}
\ No newline at end of file
+
+    @Operation(summary = "Clone or retrieve a repository asynchronously",
+            description = "Starts cloning or updating the project in the background and returns a job to track, see /jobs/{jobId}/events",
+            operationId = "cloneProjectAsync")
+    @PostMapping("/clone/jobs")
+    public ResponseEntity<JobDTO> cloneRepositoryAsync(@Valid @RequestBody ProjectRequestDTO request) {
+        Job<ProjectResponseDTO> job = jobService.submit("clone",
+                progress -> gitProjectService.getOrCloneProject(request.url(), progress));
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(job.toDto());
+    }
+}
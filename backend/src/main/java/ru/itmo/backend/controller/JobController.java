@@ -0,0 +1,84 @@
+package ru.itmo.backend.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.itmo.backend.dto.response.job.JobDTO;
+import ru.itmo.backend.service.jobs.Job;
+import ru.itmo.backend.service.jobs.JobService;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Controller exposing the state of asynchronous jobs.
+ */
+@RestController
+@RequestMapping("/jobs")
+@Tag(name = "Jobs", description = "Endpoints for tracking asynchronous jobs")
+public class JobController {
+
+    private final JobService jobService;
+    private final long streamTimeoutMillis;
+
+    public JobController(JobService jobService, @Value("${jobs.stream-timeout-ms:1800000}") long streamTimeoutMillis) {
+        this.jobService = jobService;
+        this.streamTimeoutMillis = streamTimeoutMillis;
+    }
+
+    /**
+     * Returns the current state of a job.
+     */
+    @Operation(operationId = "getJob")
+    @GetMapping("/{jobId}")
+    public ResponseEntity<JobDTO> getJob(@PathVariable String jobId) {
+        return jobService.find(jobId)
+                .map(job -> ResponseEntity.ok(job.toDto()))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Streams state changes of a job as server-sent events until it finishes.
+     */
+    @Operation(operationId = "streamJob")
+    @GetMapping(value = "/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamJob(@PathVariable String jobId) {
+        return jobService.find(jobId)
+                .map(job -> ResponseEntity.ok(stream(job, streamTimeoutMillis)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Sends every state of the job as a {@code progress} event, and the final state as a {@code finished} event
+     * completing the stream.
+     */
+    static SseEmitter stream(Job<?> job, long timeoutMillis) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        AtomicReference<Runnable> unsubscribe = new AtomicReference<>(() -> {
+        });
+
+        unsubscribe.set(job.subscribe(state -> {
+            try {
+                boolean finished = state.status().isFinished();
+                emitter.send(SseEmitter.event()
+                        .name(finished ? "finished" : "progress")
+                        .data(state, MediaType.APPLICATION_JSON));
+                if (finished) {
+                    emitter.complete();
+                }
+            } catch (IOException | IllegalStateException e) {
+                // Client went away
+                unsubscribe.get().run();
+            }
+        }));
+
+        emitter.onCompletion(() -> unsubscribe.get().run());
+        emitter.onTimeout(() -> unsubscribe.get().run());
+        emitter.onError(e -> unsubscribe.get().run());
+        return emitter;
+    }
+}
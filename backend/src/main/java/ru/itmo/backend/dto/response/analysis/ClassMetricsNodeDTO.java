@@ -7,8 +7,10 @@ import java.util.List;
 public record ClassMetricsNodeDTO(
         @Schema(description = "Class name")
         String name,
-        @Schema(description = "List of method metrics for this class")
-        List<MethodMetricsNodeDTO> items
+        @Schema(description = "List of method metrics for this class, null beyond the requested depth")
+        List<MethodMetricsNodeDTO> items,
+        @Schema(description = "Metrics rolled up over all methods of the class")
+        MetricsSummaryDTO summary
 ) implements MetricsNodeDTO {
     @Override
     public String getName() {
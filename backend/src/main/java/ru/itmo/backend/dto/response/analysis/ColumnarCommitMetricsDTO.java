@@ -0,0 +1,42 @@
+package ru.itmo.backend.dto.response.analysis;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import ru.itmo.backend.dto.response.commit.CommitDTO;
+
+import java.util.List;
+
+@Schema(description = "Metrics of a commit in columnar form: the tree of CommitMetricsDTO flattened into parallel arrays")
+public record ColumnarCommitMetricsDTO(
+        @Schema(description = "Commit information")
+        CommitDTO commit,
+        @Schema(description = "String dictionary; string values elsewhere are indices into it")
+        List<String> strings,
+        @Schema(description = "Node kinds in depth-first order: 0 package, 1 class, 2 method. Node 0 is the root package")
+        int[] nodeTypes,
+        @Schema(description = "Index of the parent node of each node, -1 for the root")
+        int[] parents,
+        @Schema(description = "Dictionary index of the name of each node")
+        int[] names,
+        @Schema(description = "Node index of each method; metric columns are aligned with this array")
+        int[] methods,
+        @Schema(description = "One column per requested metric")
+        List<Column> columns
+) {
+    public static final String MEDIA_TYPE = "application/vnd.babel.metrics-columnar+json";
+
+    public static final int PACKAGE = 0;
+    public static final int CLASS = 1;
+    public static final int METHOD = 2;
+
+    @Schema(description = "Values of a single metric for all methods")
+    public record Column(
+            @Schema(description = "Metric code")
+            String metricCode,
+            @Schema(description = "Metric type: NUMERIC values are numbers, STRING and COLOR values are dictionary indices, -1 for none")
+            String type,
+            @Schema(description = "Value for each method")
+            int[] values,
+            @Schema(description = "For COLOR metrics, dictionary index of the displayed value for each method")
+            int[] labels
+    ) {}
+}
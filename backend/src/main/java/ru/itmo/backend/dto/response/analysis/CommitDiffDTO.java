@@ -0,0 +1,26 @@
+package ru.itmo.backend.dto.response.analysis;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+import java.util.Map;
+
+@Schema(description = "Metric changes between two commits")
+public record CommitDiffDTO(
+        @Schema(description = "SHA of the older commit")
+        String oldCommit,
+        @Schema(description = "SHA of the newer commit")
+        String newCommit,
+        @Schema(description = "Number of changed source files")
+        int changedFiles,
+        @Schema(description = "Number of added methods")
+        int addedMethods,
+        @Schema(description = "Number of removed methods")
+        int removedMethods,
+        @Schema(description = "Number of methods whose metrics changed")
+        int modifiedMethods,
+        @Schema(description = "Sum of numeric metric differences of all methods")
+        Map<String, Integer> totalDelta,
+        @Schema(description = "Changed methods; methods with unchanged metrics are omitted")
+        List<MethodDiffDTO> methods
+) {}
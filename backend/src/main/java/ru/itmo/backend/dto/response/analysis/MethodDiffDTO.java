@@ -0,0 +1,28 @@
+package ru.itmo.backend.dto.response.analysis;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.Map;
+
+@Schema(description = "Change of a single method between two commits")
+public record MethodDiffDTO(
+        @Schema(description = "Fully qualified class name")
+        String className,
+        @Schema(description = "Method name")
+        String methodName,
+        @Schema(description = "Repository-relative path of the file containing the method in the newer commit, "
+                + "or in the older one if the method was removed")
+        String file,
+        @Schema(description = "Kind of change")
+        Status status,
+        @Schema(description = "Numeric metrics in the older commit, absent for added methods")
+        Map<String, Integer> before,
+        @Schema(description = "Numeric metrics in the newer commit, absent for removed methods")
+        Map<String, Integer> after,
+        @Schema(description = "Difference of numeric metrics, newer minus older")
+        Map<String, Integer> delta
+) {
+    public enum Status {
+        ADDED, REMOVED, MODIFIED
+    }
+}
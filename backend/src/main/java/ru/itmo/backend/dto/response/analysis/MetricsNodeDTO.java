@@ -11,10 +11,11 @@ import io.swagger.v3.oas.annotations.media.Schema;
 )
 @JsonSubTypes({
     @JsonSubTypes.Type(value = PackageMetricsNodeDTO.class, name = "package"),
-    @JsonSubTypes.Type(value = ClassMetricsNodeDTO.class, name = "class")
+    @JsonSubTypes.Type(value = ClassMetricsNodeDTO.class, name = "class"),
+    @JsonSubTypes.Type(value = OtherMetricsNodeDTO.class, name = "other")
 })
-@Schema(description = "Base interface for metrics nodes (package or class)", 
-        subTypes = {PackageMetricsNodeDTO.class, ClassMetricsNodeDTO.class})
+@Schema(description = "Base interface for metrics nodes (package, class or collapsed small nodes)", 
+        subTypes = {PackageMetricsNodeDTO.class, ClassMetricsNodeDTO.class, OtherMetricsNodeDTO.class})
 public interface MetricsNodeDTO {
     String getName();
 }
@@ -0,0 +1,21 @@
+package ru.itmo.backend.dto.response.analysis;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "NLOC and CCN rolled up over all methods of a package or class")
+public record MetricsSummaryDTO(
+        @Schema(description = "Number of methods")
+        int methodCount,
+        @Schema(description = "Total NLOC of all methods")
+        long totalNloc,
+        @Schema(description = "Maximum NLOC of all methods")
+        int maxNloc,
+        @Schema(description = "Mean NLOC of all methods")
+        double meanNloc,
+        @Schema(description = "Total CCN of all methods")
+        long totalCcn,
+        @Schema(description = "Maximum CCN of all methods")
+        int maxCcn,
+        @Schema(description = "Mean CCN of all methods")
+        double meanCcn
+) {}
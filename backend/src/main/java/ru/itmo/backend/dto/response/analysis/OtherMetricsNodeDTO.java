@@ -0,0 +1,20 @@
+package ru.itmo.backend.dto.response.analysis;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Packages and classes of a package collapsed together because each is below the requested minimum size")
+public record OtherMetricsNodeDTO(
+        @Schema(description = "Always \"other\"")
+        String name,
+        @Schema(description = "Number of collapsed packages and classes")
+        int nodeCount,
+        @Schema(description = "Metrics rolled up over the collapsed nodes")
+        MetricsSummaryDTO summary
+) implements MetricsNodeDTO {
+    public static final String NAME = "other";
+
+    @Override
+    public String getName() {
+        return name;
+    }
+}
@@ -5,10 +5,15 @@ import java.util.List;
 
 @Schema(description = "Represents metrics for a package")
 public record PackageMetricsNodeDTO(
-        @Schema(description = "Package name")
+        @Schema(description = "Package name relative to the parent node; chains of packages without classes are "
+                + "collapsed into one node named a.b.c")
         String name,
-        @Schema(description = "List of child nodes (packages or classes)")
-        List<MetricsNodeDTO> items
+        @Schema(description = "Full package name, accepted as the path of the subtree endpoint")
+        String path,
+        @Schema(description = "List of child nodes (packages or classes), null beyond the requested depth")
+        List<MetricsNodeDTO> items,
+        @Schema(description = "Metrics rolled up over all methods of the package")
+        MetricsSummaryDTO summary
 ) implements MetricsNodeDTO {
     @Override
     public String getName() {
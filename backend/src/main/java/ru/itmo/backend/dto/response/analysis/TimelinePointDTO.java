@@ -0,0 +1,22 @@
+package ru.itmo.backend.dto.response.analysis;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import ru.itmo.backend.dto.response.commit.CommitDTO;
+
+import java.util.Map;
+
+@Schema(description = "Aggregate metrics of a commit on a branch timeline")
+public record TimelinePointDTO(
+        @Schema(description = "Commit information")
+        CommitDTO commit,
+        @Schema(description = "Total NLOC of all methods")
+        long totalNloc,
+        @Schema(description = "Mean CCN of all methods")
+        double meanCcn,
+        @Schema(description = "Maximum CCN of all methods")
+        int maxCcn,
+        @Schema(description = "Number of methods")
+        int methodCount,
+        @Schema(description = "Number of methods per package")
+        Map<String, Integer> methodsPerPackage
+) {}
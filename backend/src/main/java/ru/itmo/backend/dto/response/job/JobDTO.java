@@ -0,0 +1,28 @@
+package ru.itmo.backend.dto.response.job;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import ru.itmo.backend.service.jobs.JobStatus;
+
+@Schema(description = "State of an asynchronous job")
+public record JobDTO(
+        @Schema(description = "Job ID", example = "3f0c6a7e-2d1b-4a4e-9c3e-5b8f1f6f2a10")
+        String jobId,
+        @Schema(description = "Kind of work performed by the job", example = "clone")
+        String type,
+        @Schema(description = "Job status")
+        JobStatus status,
+        @Schema(description = "Current stage of the job", example = "Receiving objects")
+        String stage,
+        @Schema(description = "Units of work done in the current stage")
+        int completed,
+        @Schema(description = "Units of work in the current stage, 0 if unknown")
+        int total,
+        @Schema(description = "Result of a succeeded job", required = false)
+        Object result,
+        @Schema(description = "Error message of a failed job", required = false)
+        String error,
+        @Schema(description = "Creation time in milliseconds since epoch")
+        long createdAt,
+        @Schema(description = "Last update time in milliseconds since epoch")
+        long updatedAt
+) {}
@@ -0,0 +1,42 @@
+package ru.itmo.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Persisted evaluation result of a single commit.
+ * Evaluation output for a given SHA never changes, so it is stored once
+ * per (project, commit, language) and served from here on repeated requests.
+ */
+@Entity
+@Table(name = "commit_metrics",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"project_id", "commit_sha", "language_code"}))
+@Getter
+@Setter
+public class CommitMetricsEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "project_id", nullable = false)
+    private GitProjectEntity project;
+
+    @Column(name = "commit_sha", nullable = false, length = 40)
+    private String commitSha;
+
+    @Column(name = "language_code", nullable = false)
+    private String languageCode;
+
+    /**
+     * JSON-serialized {@code Map<String, ClassMetric>} produced by the evaluator.
+     */
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    private LocalDateTime createdAt;
+}
@@ -10,12 +10,37 @@ import java.util.Map;
 import java.util.function.Predicate;
 
 public interface MetricEvaluator {
-    static public record MetricEvaluationContext (String repoUrl, String commitSha) {
+    /**
+     * @param blobIds Git blob ids of the files of the commit keyed by repository-relative path, if the files were
+     *                written from the object database rather than checked out; files rejected by
+     *                {@link #blobFilter()} are listed here but may be missing on disk
+     */
+    static public record MetricEvaluationContext (String repoUrl, String commitSha, Map<String, String> blobIds) {
         MetricEvaluationContext() {
-            this(null, null);
+            this(null, null, null);
+        }
+
+        public MetricEvaluationContext(String repoUrl, String commitSha) {
+            this(repoUrl, commitSha, null);
+        }
+
+        public MetricEvaluationContext withBlobIds(Map<String, String> blobIds) {
+            return new MetricEvaluationContext(repoUrl, commitSha, blobIds);
         }
     };
 
+    /**
+     * @return filter accepting source files this evaluator analyzes
+     */
+    public Predicate<Path> sourceFilter();
+
+    /**
+     * @return filter accepting Git blob ids of source files that have to be present on disk for evaluation
+     */
+    default Predicate<String> blobFilter() {
+        return blobId -> true;
+    }
+
     public Map<String, ClassMetric> evaluateMetrics(File repository, Predicate<Path> filesFilter, List<String> metrics, MetricEvaluationContext context) throws IOException, MetricEvaluationException;
      default Map<String, ClassMetric> evaluateMetrics(File repository, Predicate<Path> filesFilter, List<String> metrics) throws IOException, MetricEvaluationException {
         return evaluateMetrics(repository, filesFilter, metrics, new MetricEvaluationContext());
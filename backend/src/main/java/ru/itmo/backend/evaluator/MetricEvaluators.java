@@ -3,16 +3,21 @@ package ru.itmo.backend.evaluator;
 import ru.itmo.backend.evaluator.evaluators.CSharpMetricsEvaluator;
 import ru.itmo.backend.evaluator.evaluators.CxxMetricsEvaluator;
 import ru.itmo.backend.evaluator.evaluators.JavaMetricEvaluator;
+import ru.itmo.backend.evaluator.lizard.ShardedLizardRunner;
 
 import java.util.List;
 
 public class MetricEvaluators {
 
     public static MetricEvaluator forLanguage(Language languageName) throws MetricEvaluationException {
+        return forLanguage(languageName, ShardedLizardRunner.sequential());
+    }
+
+    public static MetricEvaluator forLanguage(Language languageName, ShardedLizardRunner lizardRunner) throws MetricEvaluationException {
         return switch (languageName) {
-            case CXX -> new CxxMetricsEvaluator();
-            case JAVA -> new JavaMetricEvaluator();
-            case CSHARP -> new CSharpMetricsEvaluator();
+            case CXX -> new CxxMetricsEvaluator(lizardRunner);
+            case JAVA -> new JavaMetricEvaluator(lizardRunner);
+            case CSHARP -> new CSharpMetricsEvaluator(lizardRunner);
             default ->
                     throw new MetricEvaluationException("No evaluator found for language" + languageName);
         };
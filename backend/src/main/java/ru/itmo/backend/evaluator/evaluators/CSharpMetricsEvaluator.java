@@ -2,9 +2,11 @@ package ru.itmo.backend.evaluator.evaluators;
 
 import ru.itmo.backend.evaluator.MetricEvaluationException;
 import ru.itmo.backend.evaluator.MetricEvaluator;
+import ru.itmo.backend.evaluator.lizard.LizardRecord;
 import ru.itmo.backend.evaluator.lizard.LizardRunner;
+import ru.itmo.backend.evaluator.lizard.ShardedLizardRunner;
 import ru.itmo.backend.evaluator.model.ClassMetric;
-import ru.itmo.backend.evaluator.model.MethodMetric;
+import ru.itmo.backend.evaluator.model.StringPool;
 import ru.itmo.backend.evaluator.utils.FilesUtils;
 
 import java.io.File;
@@ -20,8 +22,20 @@ public class CSharpMetricsEvaluator implements MetricEvaluator {
 
     private static final List<String> CSHARP_EXTENSIONS = Arrays.asList(".cs", ".csx");
 
+    private final ShardedLizardRunner lizardRunner;
+    private final ShardedLizardRunner.CachedBlobs cachedBlobs;
 
-    private ClassMethod parseMethodName(String methodName, Map<String, String> metrics) throws MetricEvaluationException {
+    public CSharpMetricsEvaluator() {
+        this(ShardedLizardRunner.sequential());
+    }
+
+    public CSharpMetricsEvaluator(ShardedLizardRunner lizardRunner) {
+        this.lizardRunner = lizardRunner;
+        this.cachedBlobs = lizardRunner.cachedBlobs("csharp");
+    }
+
+
+    private ClassMethod parseMethodName(String methodName) {
         String[] parts = methodName.split("::");
         String simpleMethodName = parts[parts.length - 1];
         String head = parts[0];
@@ -35,41 +49,39 @@ public class CSharpMetricsEvaluator implements MetricEvaluator {
         return new ClassMethod(packageName, className, className, simpleMethodName);
     }
 
-    Map<String, ClassMetric> lizardOutputToCSharpMetrics(Map<String, Map<String, String>> methods) throws MetricEvaluationException {
-        Map<String, ClassMetric> result = new HashMap<>();
-
-        for (var entry : methods.entrySet()) {
-            ClassMethod raw = parseMethodName(entry.getKey(), entry.getValue());
-
+    private void addMethod(Map<String, ClassMetric> result, LizardRecord record, String githubLink, StringPool strings) {
+        ClassMethod raw = parseMethodName(record.fullName());
 
-            if (!result.containsKey(raw.className)) {
-                ClassMetric classMetric = new ClassMetric(raw.className);
-                classMetric.own().put("PACKAGE_NAME", raw.packageName);
-                classMetric.own().put("SIMPLE_NAME", raw.simpleClassName);
-                result.put(raw.className, classMetric);
-            }
-
-            ClassMetric classMetric = result.get(raw.className);
-            classMetric.methods().put(raw.methodName, new MethodMetric(raw.methodName, LizardRunner.LizardFields.filterMetrics(entry.getValue())));
-            result.put(raw.className, classMetric);
-        }
+        ClassMetric classMetric = result.computeIfAbsent(raw.className, className ->
+                new ClassMetric(className, strings.intern(raw.packageName), raw.simpleClassName));
+        classMetric.methods().put(raw.methodName, record.toMethodMetric(raw.methodName, githubLink, strings));
+    }
 
-        return result;
+    @Override
+    public Predicate<Path> sourceFilter() {
+        return FilesUtils.haveExtension(CSHARP_EXTENSIONS);
     }
 
+    @Override
+    public Predicate<String> blobFilter() {
+        return cachedBlobs;
+    }
 
     @Override
     public Map<String, ClassMetric> evaluateMetrics(File repository, Predicate<Path> filesFilter, List<String> metrics, MetricEvaluationContext context) throws IOException, MetricEvaluationException {
-        Predicate<Path> filter = FilesUtils.haveExtension(CSHARP_EXTENSIONS).and(filesFilter);
-        List<Path> files = FilesUtils.collectPaths(repository, filter);
-        var lizardOutput = LizardRunner.runLizard("csharp", files);
-
-        if (context.repoUrl() != null) {
-            LizardRunner.generateGithubLocations(repository.getPath(), lizardOutput, context.repoUrl(), context.commitSha());
-        }
-
-        return lizardOutputToCSharpMetrics(lizardOutput);
+        Predicate<Path> filter = sourceFilter().and(filesFilter);
+        Map<Path, String> blobIds = FilesUtils.resolveBlobIds(repository, context.blobIds());
+        List<Path> files = FilesUtils.collectPaths(repository, filter, blobIds);
 
+        Map<String, ClassMetric> result = new HashMap<>();
+        StringPool strings = new StringPool();
+        String basePath = repository.getPath();
+        lizardRunner.runLizard("csharp", files, blobIds, cachedBlobs, record -> {
+            String githubLink = context.repoUrl() == null ? null
+                    : LizardRunner.githubLink(basePath, record.location(), context.repoUrl(), context.commitSha());
+            addMethod(result, record, githubLink, strings);
+        });
+        return result;
     }
 
     private record ClassMethod(String packageName, String className,
@@ -1,6 +1,6 @@
 package ru.itmo.backend.evaluator.evaluators;
 
-import ru.itmo.backend.evaluator.lizard.LizardRunner;
+import ru.itmo.backend.evaluator.lizard.ShardedLizardRunner;
 import ru.itmo.backend.evaluator.MetricEvaluationException;
 import ru.itmo.backend.evaluator.MetricEvaluator;
 import ru.itmo.backend.evaluator.model.ClassMetric;
@@ -17,11 +17,34 @@ import java.util.function.Predicate;
 public class CxxMetricsEvaluator implements MetricEvaluator {
     private static final List<String> CXX_EXTENSIONS = Arrays.asList(".cpp", ".cc", ".cxx", ".c++", ".C", ".h", ".hpp", ".hh", ".hxx", ".h++");
 
+    private final ShardedLizardRunner lizardRunner;
+    private final ShardedLizardRunner.CachedBlobs cachedBlobs;
+
+    public CxxMetricsEvaluator() {
+        this(ShardedLizardRunner.sequential());
+    }
+
+    public CxxMetricsEvaluator(ShardedLizardRunner lizardRunner) {
+        this.lizardRunner = lizardRunner;
+        this.cachedBlobs = lizardRunner.cachedBlobs("cpp");
+    }
+
+    @Override
+    public Predicate<Path> sourceFilter() {
+        return FilesUtils.haveExtension(CXX_EXTENSIONS);
+    }
+
+    @Override
+    public Predicate<String> blobFilter() {
+        return cachedBlobs;
+    }
+
     @Override
     public Map<String, ClassMetric> evaluateMetrics(File repository, Predicate<Path> filesFilter, List<String> metrics, MetricEvaluationContext context) throws IOException, MetricEvaluationException {
-        Predicate<Path> filter = FilesUtils.haveExtension(CXX_EXTENSIONS).and(filesFilter);
-        List<Path> files = FilesUtils.collectPaths(repository, filter);
-        var methods = LizardRunner.runLizard("cpp", files);
+        Predicate<Path> filter = sourceFilter().and(filesFilter);
+        Map<Path, String> blobIds = FilesUtils.resolveBlobIds(repository, context.blobIds());
+        List<Path> files = FilesUtils.collectPaths(repository, filter, blobIds);
+        var methods = lizardRunner.runLizard("cpp", files, blobIds, cachedBlobs);
         return null;
     }
 }
@@ -1,133 +1,171 @@
 package ru.itmo.backend.evaluator.evaluators;
 
+import ru.itmo.backend.evaluator.lizard.LizardRecord;
 import ru.itmo.backend.evaluator.lizard.LizardRunner;
+import ru.itmo.backend.evaluator.lizard.ShardedLizardRunner;
 import ru.itmo.backend.evaluator.MetricEvaluationException;
 import ru.itmo.backend.evaluator.MetricEvaluator;
 import ru.itmo.backend.evaluator.model.ClassMetric;
-import ru.itmo.backend.evaluator.model.MethodMetric;
+import ru.itmo.backend.evaluator.model.StringPool;
 import ru.itmo.backend.evaluator.utils.FilesUtils;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionException;
 import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 public class JavaMetricEvaluator implements MetricEvaluator {
 
     private static final List<String> JAVA_EXTENSIONS = List.of(".java");
+    private static final String DEFAULT_PACKAGE = "<default>";
+    private static final Pattern PACKAGE_STATEMENT = Pattern.compile("(?:@.*\\s)?package\\s+([\\p{L}\\p{N}_$.\\s]+)", Pattern.DOTALL);
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    // Guards against scanning a whole file that has no statement terminator in its header
+    private static final int MAX_HEADER_STATEMENT_LENGTH = 4096;
+
+    private final ShardedLizardRunner lizardRunner;
+
+    public JavaMetricEvaluator() {
+        this(ShardedLizardRunner.sequential());
+    }
+
+    public JavaMetricEvaluator(ShardedLizardRunner lizardRunner) {
+        this.lizardRunner = lizardRunner;
+    }
 
     static public String getPackageName(String filePath) throws MetricEvaluationException {
         if (filePath == null || filePath.trim().isEmpty()) {
             throw new MetricEvaluationException("Non correct source file " + filePath);
         }
 
-        boolean isInsideComment = false;
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String line;
-
-            while ((line = reader.readLine()) != null) {
-                String trimmed = line.trim();
+        try (Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(filePath), StandardCharsets.UTF_8))) {
+            return parsePackageName(reader);
+        } catch (FileNotFoundException e) {
+            throw new MetricEvaluationException("File not found", e);
+        } catch (IOException e) {
+            throw new MetricEvaluationException(e);
+        }
+    }
 
-                if (isInsideComment) {
-                    int index;
-                    if ((index = trimmed.indexOf("*/")) != -1) {
-                        trimmed = trimmed.substring(index + 2).trim();
-                        isInsideComment = false;
-                    } else {
-                        continue;
+    /**
+     * Reads the first statement of a source file, skipping comments, and extracts the package name from it.
+     * The declaration may span several lines and have comments between its tokens.
+     */
+    static String parsePackageName(Reader reader) throws IOException {
+        PushbackReader in = new PushbackReader(reader, 1);
+        StringBuilder statement = new StringBuilder();
+
+        int c;
+        while ((c = in.read()) != -1 && statement.length() < MAX_HEADER_STATEMENT_LENGTH) {
+            if (c == '/') {
+                int next = in.read();
+                if (next == '/') {
+                    while ((c = in.read()) != -1 && c != '\n') {
                     }
-                }
-
-                if (trimmed.isEmpty() || trimmed.startsWith("//")) {
+                    statement.append(' ');
                     continue;
                 }
-
-                int index = 0;
-                while (trimmed.startsWith("/*") && (index = trimmed.indexOf("*/", 2)) != -1) {
-                    trimmed = trimmed.substring(index + 2).trim();
-                }
-
-                if (trimmed.isEmpty()) {
+                if (next == '*') {
+                    int previous = 0;
+                    while ((c = in.read()) != -1 && !(previous == '*' && c == '/')) {
+                        previous = c;
+                    }
+                    statement.append(' ');
                     continue;
                 }
-
-                if (trimmed.startsWith("/*")) {
-                    isInsideComment = true;
-                    continue;
+                if (next != -1) {
+                    in.unread(next);
                 }
+            }
 
-
-                // First statement in code should be `package` statement
-                if (trimmed.startsWith("package ")) {
-                    int semicolon = trimmed.indexOf(";");
-                    if (semicolon == -1) {
-                        throw new MetricEvaluationException("Multiline package declaration is not supported");
-                    }
-                    return trimmed.substring("package ".length(), semicolon).trim();
-                } else {
-                    return "<default>";
-                }
+            // First statement in code should be `package` statement
+            if (c == ';' || c == '{') {
+                break;
             }
-        } catch (FileNotFoundException e) {
-            throw new MetricEvaluationException("File not found", e);
-        } catch (IOException e) {
-            throw new MetricEvaluationException(e);
+            statement.append((char) c);
         }
 
-        return "<default>";
+        Matcher matcher = PACKAGE_STATEMENT.matcher(statement.toString().strip());
+        return matcher.matches() ? WHITESPACE.matcher(matcher.group(1)).replaceAll("") : DEFAULT_PACKAGE;
+    }
+
+    /**
+     * Resolves packages of all given files, reading the header of each file once.
+     *
+     * @return package names keyed by file path as passed to Lizard
+     */
+    static Map<String, String> resolvePackageNames(List<Path> files) throws MetricEvaluationException {
+        try {
+            return files.parallelStream().collect(Collectors.toConcurrentMap(Path::toString, file -> {
+                try {
+                    return getPackageName(file.toString());
+                } catch (MetricEvaluationException e) {
+                    throw new CompletionException(e);
+                }
+            }, (first, second) -> first));
+        } catch (CompletionException e) {
+            throw (MetricEvaluationException) e.getCause();
+        }
     }
+
     private record ClassMethod(String packageName, String className, String simpleClassName, String methodName) {
     }
 
-    private ClassMethod parseMethodName(String methodName, Map<String, String> metrics) throws MetricEvaluationException {
-        String sourceFileName = metrics.get(LizardRunner.LizardFields.FILE);
-        String packageName = getPackageName(sourceFileName);
+    private ClassMethod parseMethodName(String methodName, String sourceFileName, Map<String, String> packages) throws MetricEvaluationException {
+        String packageName = packages.get(sourceFileName);
+        if (packageName == null) {
+            packageName = getPackageName(sourceFileName);
+            packages.put(sourceFileName, packageName);
+        }
         String[] parts = methodName.split("::");
         String simpleMethodName = parts[parts.length - 1];
         String fullClassName = packageName + "." + (parts.length == 1 ? "<unnamed>" : parts[0]);
         return new ClassMethod(packageName, fullClassName, parts[0], simpleMethodName);
     }
 
-    Map<String, ClassMetric> lizardOutputToJavaMetrics(Map<String, Map<String, String>> methods) throws MetricEvaluationException {
-        Map<String, ClassMetric> result = new HashMap<>();
-
-        for (var entry : methods.entrySet()) {
-            ClassMethod raw = parseMethodName(entry.getKey(), entry.getValue());
-
-            if (!result.containsKey(raw.className)) {
-                ClassMetric classMetric = new ClassMetric(raw.className);
-                classMetric.own().put("PACKAGE_NAME", raw.packageName);
-                classMetric.own().put("SIMPLE_NAME", raw.simpleClassName);
-                result.put(raw.className, classMetric);
-            }
+    private void addMethod(Map<String, ClassMetric> result, LizardRecord record, String githubLink, StringPool strings,
+                           Map<String, String> packages) throws MetricEvaluationException {
+        ClassMethod raw = parseMethodName(record.fullName(), record.file(), packages);
 
-            ClassMetric classMetric = result.get(raw.className);
-            classMetric.methods().put(raw.methodName, new MethodMetric(raw.methodName, LizardRunner.LizardFields.filterMetrics(entry.getValue())));
-            result.put(raw.className, classMetric);
-        }
+        ClassMetric classMetric = result.computeIfAbsent(raw.className, className ->
+                new ClassMetric(className, strings.intern(raw.packageName), raw.simpleClassName));
+        classMetric.methods().put(raw.methodName, record.toMethodMetric(raw.methodName, githubLink, strings));
+    }
 
-        return result;
+    @Override
+    public Predicate<Path> sourceFilter() {
+        return FilesUtils.haveExtension(JAVA_EXTENSIONS);
     }
 
     @Override
     public Map<String, ClassMetric> evaluateMetrics(File repository, Predicate<Path> filesFilter, List<String> metrics, MetricEvaluationContext context) throws MetricEvaluationException {
-        Predicate<Path> filter = FilesUtils.haveExtension(JAVA_EXTENSIONS).and(filesFilter);
+        Predicate<Path> filter = sourceFilter().and(filesFilter);
         List<Path> filesToProcess = null;
+        // Package declarations are read from every file, so the default blobFilter() keeps all files on disk
+        Map<Path, String> blobIds = FilesUtils.resolveBlobIds(repository, context.blobIds());
 
         try {
-            filesToProcess = FilesUtils.collectPaths(repository, filter);
+            filesToProcess = FilesUtils.collectPaths(repository, filter, blobIds);
         } catch (IOException e) {
             throw new MetricEvaluationException(e);
         }
 
-        var lizardOutput = LizardRunner.runLizard("java", filesToProcess);
-        if (context.repoUrl() != null) {
-            LizardRunner.generateGithubLocations(repository.getPath(), lizardOutput, context.repoUrl(), context.commitSha());
-        }
-        return lizardOutputToJavaMetrics(lizardOutput);
+        Map<String, String> packages = resolvePackageNames(filesToProcess);
+        Map<String, ClassMetric> result = new HashMap<>();
+        StringPool strings = new StringPool();
+        String basePath = repository.getPath();
+        lizardRunner.runLizard("java", filesToProcess, blobIds, null, record -> {
+            String githubLink = context.repoUrl() == null ? null
+                    : LizardRunner.githubLink(basePath, record.location(), context.repoUrl(), context.commitSha());
+            addMethod(result, record, githubLink, strings, packages);
+        });
+        return result;
     }
 }
@@ -0,0 +1,79 @@
+package ru.itmo.backend.evaluator.lizard;
+
+import ru.itmo.backend.evaluator.MetricEvaluationException;
+import ru.itmo.backend.evaluator.model.MethodMetric;
+import ru.itmo.backend.evaluator.model.NumericMetric;
+import ru.itmo.backend.evaluator.model.StringPool;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Single function reported by Lizard, parsed from one line of its CSV output.
+ */
+public record LizardRecord(int nloc, int ccn, int tokens, int params, int length,
+                           String location, String file, String fullName) {
+
+    static LizardRecord parse(String[] line) throws MetricEvaluationException {
+        if (line.length < LizardRunner.LizardFields.NATIVE_FIELDS.size()) {
+            throw new MetricEvaluationException("Unexpected Lizard output line: " + String.join(",", line));
+        }
+        try {
+            return new LizardRecord(
+                    Integer.parseInt(line[0]),
+                    Integer.parseInt(line[1]),
+                    Integer.parseInt(line[2]),
+                    Integer.parseInt(line[3]),
+                    Integer.parseInt(line[4]),
+                    line[5],
+                    line[6],
+                    line[7]);
+        } catch (NumberFormatException e) {
+            throw new MetricEvaluationException("Unexpected Lizard output line: " + String.join(",", line), e);
+        }
+    }
+
+    /**
+     * Moves the record to another file with the same content.
+     *
+     * @param file path of the file as passed to Lizard
+     */
+    public LizardRecord relocate(String file) {
+        int separator = location.lastIndexOf('@');
+        String position = separator >= 0 ? location.substring(0, separator) : location;
+        return new LizardRecord(nloc, ccn, tokens, params, length, position + "@" + file, file, fullName);
+    }
+
+    /**
+     * Converts the record to the evaluator model.
+     *
+     * @param name       simple method name
+     * @param githubLink link to the method on GitHub, may be {@code null}
+     * @param strings    pool deduplicating file paths of the evaluation
+     */
+    public MethodMetric toMethodMetric(String name, String githubLink, StringPool strings) {
+        int[] values = new int[NumericMetric.count()];
+        values[NumericMetric.NLOC.ordinal()] = nloc;
+        values[NumericMetric.CCN.ordinal()] = ccn;
+        values[NumericMetric.TKN.ordinal()] = tokens;
+        values[NumericMetric.PARAM.ordinal()] = params;
+        values[NumericMetric.LENGTH.ordinal()] = length;
+        return new MethodMetric(name, values, fullName, strings.intern(file), location, githubLink);
+    }
+
+    /**
+     * @return fields of the record keyed by {@link LizardRunner.LizardFields} names
+     */
+    public Map<String, String> toMap() {
+        Map<String, String> result = new HashMap<>();
+        result.put(LizardRunner.LizardFields.NLOC, String.valueOf(nloc));
+        result.put(LizardRunner.LizardFields.CCN, String.valueOf(ccn));
+        result.put(LizardRunner.LizardFields.TKN, String.valueOf(tokens));
+        result.put(LizardRunner.LizardFields.PARAM, String.valueOf(params));
+        result.put(LizardRunner.LizardFields.LENGTH, String.valueOf(length));
+        result.put(LizardRunner.LizardFields.LOCATION, location);
+        result.put(LizardRunner.LizardFields.FILE, file);
+        result.put(LizardRunner.LizardFields.FULL_NAME, fullName);
+        return result;
+    }
+}
@@ -0,0 +1,36 @@
+package ru.itmo.backend.evaluator.lizard;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Store of per-file Lizard results keyed by the Git blob id of the file content.
+ * Records are stored independently of the file path; see {@link LizardRecord#relocate(String)}.
+ */
+public interface LizardResultCache {
+
+    LizardResultCache NONE = new LizardResultCache() {
+        @Override
+        public Optional<List<LizardRecord>> get(String language, String blobId) {
+            return Optional.empty();
+        }
+
+        @Override
+        public void put(String language, String blobId, List<LizardRecord> records) {
+        }
+    };
+
+    /**
+     * @param language Lizard language name
+     * @param blobId   Git blob id of the file content
+     * @return records of all functions of the file, if the blob was analyzed before
+     */
+    Optional<List<LizardRecord>> get(String language, String blobId);
+
+    /**
+     * @param language Lizard language name
+     * @param blobId   Git blob id of the file content
+     * @param records  records of all functions of the file, possibly empty
+     */
+    void put(String language, String blobId, List<LizardRecord> records);
+}
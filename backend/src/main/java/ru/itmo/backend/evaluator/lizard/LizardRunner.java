@@ -20,15 +20,39 @@ import java.util.stream.Collectors;
 
 public class LizardRunner {
 
+    /**
+     * Consumer of Lizard records, invoked once per reported function as the output is read.
+     */
+    @FunctionalInterface
+    public interface RecordConsumer {
+        void accept(LizardRecord record) throws MetricEvaluationException;
+    }
+
     public static Map<String, Map<String, String>> runLizard(String language, List<Path> paths) throws MetricEvaluationException {
+        Map<String, Map<String, String>> result = new HashMap<>();
+        runLizard(language, paths, record -> result.put(record.fullName(), record.toMap()));
+        return result;
+    }
+
+    /**
+     * Runs Lizard and feeds every reported function to {@code consumer} while its output is being read,
+     * without materializing the whole output.
+     */
+    public static void runLizard(String language, List<Path> paths, RecordConsumer consumer) throws MetricEvaluationException {
+        if (paths.isEmpty()) {
+            // Nothing to analyze, do not spawn lizard with an empty file list
+            return;
+        }
         try (var tmp = new TemporaryFile(paths)) {
             String[] command = {"lizard", "-l", language, "--csv", "-f", tmp.getPath().toString()};
             ProcessBuilder builder = new ProcessBuilder(command);
             builder.redirectErrorStream(true);
             Process process = builder.start();
             try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-                return parseLizardOutput(reader);
+                parseLizardOutput(reader, consumer);
             }
+        } catch (MetricEvaluationException e) {
+            throw e;
         } catch (Exception e) {
             throw new MetricEvaluationException("Lizard run failed...", e);
         }
@@ -37,70 +61,73 @@ public class LizardRunner {
     public static void generateGithubLocations(String basePath, Map<String, Map<String, String>> lizardOutput,
                                                String repoUrl, String commitSha) throws MetricEvaluationException {
         for (var methodStats : lizardOutput.entrySet()) {
-            String[] locationParts = methodStats.getValue().get(LizardFields.LOCATION).split("@");
-            if (locationParts.length != 3) {
-                throw new MetricEvaluationException("Cannot parse location: " + methodStats.getValue().get(LizardFields.LOCATION));
-            }
-            String[] linesNumber = locationParts[1].split("-");
-            if (linesNumber.length != 2) {
-                throw new MetricEvaluationException("Cannot parse location: " + methodStats.getValue().get(LizardFields.LOCATION));
-            }
+            String link = githubLink(basePath, methodStats.getValue().get(LizardFields.LOCATION), repoUrl, commitSha);
+            methodStats.getValue().put(LizardFields.GITHUB_LINK, link);
+        }
+    }
 
-            String normalizedRepoUrl = repoUrl.trim();
-            if (normalizedRepoUrl.endsWith("/")) {
-                normalizedRepoUrl = normalizedRepoUrl.substring(0, normalizedRepoUrl.length() - 1);
-            }
-            if (normalizedRepoUrl.endsWith(".git")) {
-                normalizedRepoUrl = normalizedRepoUrl.substring(0, normalizedRepoUrl.length() - 4);
-            }
-            if (!normalizedRepoUrl.contains("github.com")) {
-                throw new MetricEvaluationException("Non Github-URL for GitHub location");
-            }
-            String normalizedFilePath = locationParts[2].startsWith(basePath)
-                    ? locationParts[2].substring(basePath.length())
-                    : locationParts[2].trim();
-            if (normalizedFilePath.startsWith("/")) {
-                normalizedFilePath = normalizedFilePath.substring(1);
-            }
-            String encodedFilePath = URLEncoder.encode(normalizedFilePath, StandardCharsets.UTF_8).replace("%2F", "/").replace("+", "%20");
-
-            StringBuilder urlBuilder = new StringBuilder(normalizedRepoUrl);
-            if (!normalizedRepoUrl.contains("/blob/") && !normalizedRepoUrl.contains("/tree/")) {
-                urlBuilder.append("/blob/").append(commitSha).append("/");
-            } else {
-                if (!normalizedRepoUrl.endsWith("/")) {
-                    urlBuilder.append("/");
-                }
-            }
+    public static String githubLink(String basePath, String location, String repoUrl, String commitSha) throws MetricEvaluationException {
+        String[] locationParts = location.split("@");
+        if (locationParts.length != 3) {
+            throw new MetricEvaluationException("Cannot parse location: " + location);
+        }
+        String[] linesNumber = locationParts[1].split("-");
+        if (linesNumber.length != 2) {
+            throw new MetricEvaluationException("Cannot parse location: " + location);
+        }
 
-            urlBuilder.append(encodedFilePath);
-            urlBuilder.append("#L").append(linesNumber[0]).append("-L").append(linesNumber[1]);
-            methodStats.getValue().put(LizardFields.GITHUB_LINK, urlBuilder.toString());
+        String normalizedRepoUrl = repoUrl.trim();
+        if (normalizedRepoUrl.endsWith("/")) {
+            normalizedRepoUrl = normalizedRepoUrl.substring(0, normalizedRepoUrl.length() - 1);
+        }
+        if (normalizedRepoUrl.endsWith(".git")) {
+            normalizedRepoUrl = normalizedRepoUrl.substring(0, normalizedRepoUrl.length() - 4);
+        }
+        if (!normalizedRepoUrl.contains("github.com")) {
+            throw new MetricEvaluationException("Non Github-URL for GitHub location");
         }
+        String normalizedFilePath = locationParts[2].startsWith(basePath)
+                ? locationParts[2].substring(basePath.length())
+                : locationParts[2].trim();
+        if (normalizedFilePath.startsWith("/")) {
+            normalizedFilePath = normalizedFilePath.substring(1);
+        }
+        String encodedFilePath = URLEncoder.encode(normalizedFilePath, StandardCharsets.UTF_8).replace("%2F", "/").replace("+", "%20");
+
+        StringBuilder urlBuilder = new StringBuilder(normalizedRepoUrl);
+        if (!normalizedRepoUrl.contains("/blob/") && !normalizedRepoUrl.contains("/tree/")) {
+            urlBuilder.append("/blob/").append(commitSha).append("/");
+        } else {
+            if (!normalizedRepoUrl.endsWith("/")) {
+                urlBuilder.append("/");
+            }
+        }
+
+        urlBuilder.append(encodedFilePath);
+        urlBuilder.append("#L").append(linesNumber[0]).append("-L").append(linesNumber[1]);
+        return urlBuilder.toString();
     }
 
     public static Map<String, Map<String, String>> parseLizardOutput(Reader rawReader) throws IOException, MetricEvaluationException {
         Map<String, Map<String, String>> result = new HashMap<>();
+        parseLizardOutput(rawReader, record -> result.put(record.fullName(), record.toMap()));
+        return result;
+    }
 
-
+    /**
+     * Parses Lizard CSV output line by line, passing each parsed record to {@code consumer}.
+     */
+    public static void parseLizardOutput(Reader rawReader, RecordConsumer consumer) throws IOException, MetricEvaluationException {
         CSVParser parser = new CSVParserBuilder().withEscapeChar('\0').build();
 
         try (CSVReader reader = new CSVReaderBuilder(rawReader).withCSVParser(parser).build()) {
             String[] line;
             while ((line = reader.readNext()) != null) {
-                Map<String, String> methodMetrics = new HashMap<>();
-
-                for (int i = 0; i < LizardFields.NATIVE_FIELDS.size(); i++) {
-                    methodMetrics.put(LizardFields.NATIVE_FIELDS.get(i), line[i]);
-                }
-
-                result.put(methodMetrics.get(LizardFields.FULL_NAME), methodMetrics);
+                consumer.accept(LizardRecord.parse(line));
             }
-
         } catch (CsvValidationException e) {
             throw new MetricEvaluationException("Lizard output parse failed", e);
         }
-        return result;
     }
 
     static private class TemporaryFile implements AutoCloseable {
@@ -0,0 +1,304 @@
+package ru.itmo.backend.evaluator.lizard;
+
+import ru.itmo.backend.evaluator.MetricEvaluationException;
+import ru.itmo.backend.evaluator.utils.FilesUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Runs Lizard over a file list split into several shards, one Lizard process per shard.
+ * <p>
+ * Shards are balanced by total file size rather than by file count, and are executed on a shared
+ * executor whose size bounds the number of concurrently running Lizard processes.
+ */
+public class ShardedLizardRunner implements AutoCloseable {
+
+    /**
+     * Receives statistics of sharded runs.
+     */
+    public interface ShardListener {
+        ShardListener NONE = new ShardListener() {
+        };
+
+        default void onShardsPlanned(int shardCount) {
+        }
+
+        default void onShardCompleted(int fileCount, long bytes, Duration duration) {
+        }
+    }
+
+    public record Shard(List<Path> paths, long bytes) {
+    }
+
+    private final ExecutorService executor;
+    private final int parallelism;
+    private final long minShardBytes;
+    private final ShardListener listener;
+    private final LizardResultCache cache;
+
+    public ShardedLizardRunner(ExecutorService executor, int parallelism, long minShardBytes, ShardListener listener) {
+        this(executor, parallelism, minShardBytes, listener, LizardResultCache.NONE);
+    }
+
+    /**
+     * @param executor      executor running shards, {@code null} to run everything in one process
+     * @param parallelism   maximum number of shards per run
+     * @param minShardBytes minimum total size of files in a shard
+     * @param listener      receiver of shard statistics
+     * @param cache         per-file results of already analyzed file contents
+     */
+    public ShardedLizardRunner(ExecutorService executor, int parallelism, long minShardBytes, ShardListener listener,
+                               LizardResultCache cache) {
+        this.executor = executor;
+        this.parallelism = executor == null ? 1 : Math.max(1, parallelism);
+        this.minShardBytes = Math.max(1, minShardBytes);
+        this.listener = listener;
+        this.cache = cache;
+    }
+
+    /**
+     * Runner that behaves like {@link LizardRunner#runLizard(String, List)}: a single process, no sharding.
+     */
+    public static ShardedLizardRunner sequential() {
+        return new ShardedLizardRunner(null, 1, Long.MAX_VALUE, ShardListener.NONE);
+    }
+
+    /**
+     * Cached results of one language, read while the files of a commit are selected for writing.
+     * <p>
+     * As a filter of blob ids it accepts blobs whose files have to be analyzed and rejects cached ones,
+     * keeping their results. A run given these results serves rejected files from them, even if the cache
+     * evicted the entries in the meantime, so files that were never written are never needed.
+     * All blobs of files passed to such a run with a known blob id must have been tested by the filter.
+     */
+    public final class CachedBlobs implements Predicate<String> {
+        private final String language;
+        private final Map<String, List<LizardRecord>> records = new ConcurrentHashMap<>();
+
+        private CachedBlobs(String language) {
+            this.language = language;
+        }
+
+        @Override
+        public boolean test(String blobId) {
+            if (records.containsKey(blobId)) {
+                return false;
+            }
+            Optional<List<LizardRecord>> cached = cache.get(language, blobId);
+            cached.ifPresent(found -> records.put(blobId, found));
+            return cached.isEmpty();
+        }
+    }
+
+    /**
+     * @return filter keeping cached results of {@code language} for a later run
+     */
+    public CachedBlobs cachedBlobs(String language) {
+        return new CachedBlobs(language);
+    }
+
+    public Map<String, Map<String, String>> runLizard(String language, List<Path> paths) throws MetricEvaluationException {
+        return runLizard(language, paths, null, null);
+    }
+
+    public Map<String, Map<String, String>> runLizard(String language, List<Path> paths, Map<Path, String> blobIds,
+                                                      CachedBlobs cachedBlobs) throws MetricEvaluationException {
+        Map<String, Map<String, String>> result = new HashMap<>();
+        runLizard(language, paths, blobIds, cachedBlobs, record -> result.put(record.fullName(), record.toMap()));
+        return result;
+    }
+
+    public void runLizard(String language, List<Path> paths, LizardRunner.RecordConsumer consumer) throws MetricEvaluationException {
+        runLizard(language, paths, null, null, consumer);
+    }
+
+    /**
+     * Streams records of all given files into {@code consumer}.
+     * Files whose content was analyzed before are served from the cache, the rest are analyzed in shards.
+     * Shards run concurrently, but the consumer is never invoked by more than one thread at a time.
+     *
+     * @param blobIds     known Git blob ids of the files, or {@code null}; blob ids of other files are computed from their content
+     * @param cachedBlobs results kept by the filter that selected which files were written, or {@code null};
+     *                    files with a known blob id are looked up only there
+     */
+    public void runLizard(String language, List<Path> paths, Map<Path, String> blobIds, CachedBlobs cachedBlobs,
+                          LizardRunner.RecordConsumer consumer) throws MetricEvaluationException {
+        if (cache == LizardResultCache.NONE) {
+            runSharded(language, paths, consumer);
+            return;
+        }
+
+        Map<Path, String> missedBlobs = new HashMap<>();
+        for (Path path : paths) {
+            String blobId = blobIds != null ? blobIds.get(path) : null;
+            Optional<List<LizardRecord>> cached;
+            if (blobId != null && cachedBlobs != null) {
+                // The filter has already looked the blob up; a file it rejected is not on disk
+                cached = Optional.ofNullable(cachedBlobs.records.get(blobId));
+            } else {
+                if (blobId == null) {
+                    try {
+                        blobId = FilesUtils.gitBlobId(path);
+                    } catch (IOException e) {
+                        throw new MetricEvaluationException("Cannot read " + path, e);
+                    }
+                }
+                cached = cache.get(language, blobId);
+            }
+
+            if (cached.isPresent()) {
+                for (LizardRecord record : cached.get()) {
+                    consumer.accept(record.relocate(path.toString()));
+                }
+            } else {
+                missedBlobs.put(path.normalize(), blobId);
+            }
+        }
+        if (missedBlobs.isEmpty()) {
+            return;
+        }
+
+        Map<Path, List<LizardRecord>> recordsByFile = new HashMap<>();
+        runSharded(language, new ArrayList<>(missedBlobs.keySet()), record -> {
+            recordsByFile.computeIfAbsent(Path.of(record.file()).normalize(), file -> new ArrayList<>()).add(record);
+            consumer.accept(record);
+        });
+
+        // Stored only after the whole run succeeded; files without functions are stored as empty
+        missedBlobs.forEach((path, blobId) -> cache.put(language, blobId, recordsByFile.getOrDefault(path, List.of())));
+    }
+
+    private void runSharded(String language, List<Path> paths, LizardRunner.RecordConsumer consumer) throws MetricEvaluationException {
+        List<Shard> shards = planShards(paths, parallelism, minShardBytes);
+        listener.onShardsPlanned(shards.size());
+
+        if (shards.size() <= 1) {
+            runShard(language, shards.isEmpty() ? new Shard(paths, 0) : shards.getFirst(), consumer);
+            return;
+        }
+
+        Object lock = new Object();
+        LizardRunner.RecordConsumer serialized = record -> {
+            synchronized (lock) {
+                consumer.accept(record);
+            }
+        };
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (Shard shard : shards) {
+            futures.add(executor.submit(() -> {
+                runShard(language, shard, serialized);
+                return null;
+            }));
+        }
+
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            if (e.getCause() instanceof MetricEvaluationException cause) {
+                throw cause;
+            }
+            throw new MetricEvaluationException("Lizard shard failed", e.getCause());
+        } catch (InterruptedException e) {
+            futures.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new MetricEvaluationException("Interrupted while waiting for Lizard shards", e);
+        }
+    }
+
+    private void runShard(String language, Shard shard, LizardRunner.RecordConsumer consumer) throws MetricEvaluationException {
+        long start = System.nanoTime();
+        LizardRunner.runLizard(language, shard.paths(), consumer);
+        listener.onShardCompleted(shard.paths().size(), shard.bytes(), Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    /**
+     * Splits files into at most {@code maxShards} shards of roughly equal total size.
+     * Largest files are placed first, each into the currently lightest shard.
+     */
+    public static List<Shard> planShards(List<Path> paths, int maxShards, long minShardBytes) {
+        if (paths.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Path, Long> sizes = new HashMap<>();
+        long totalBytes = 0;
+        for (Path path : paths) {
+            long size = sizeOf(path);
+            sizes.put(path, size);
+            totalBytes += size;
+        }
+
+        int shardCount = (int) Math.max(1, Math.min(Math.min(maxShards, paths.size()), totalBytes / minShardBytes));
+        if (shardCount == 1) {
+            return List.of(new Shard(paths, totalBytes));
+        }
+
+        List<Path> sorted = new ArrayList<>(paths);
+        sorted.sort(Comparator.comparing(sizes::get).reversed());
+
+        PriorityQueue<ShardBuilder> queue = new PriorityQueue<>(Comparator.comparingLong(ShardBuilder::bytes));
+        for (int i = 0; i < shardCount; i++) {
+            queue.add(new ShardBuilder());
+        }
+        for (Path path : sorted) {
+            ShardBuilder lightest = queue.poll();
+            lightest.add(path, sizes.get(path));
+            queue.add(lightest);
+        }
+
+        return queue.stream()
+                .filter(builder -> !builder.paths.isEmpty())
+                .map(builder -> new Shard(builder.paths, builder.bytes))
+                .toList();
+    }
+
+    private static long sizeOf(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static class ShardBuilder {
+        private final List<Path> paths = new ArrayList<>();
+        private long bytes;
+
+        void add(Path path, long size) {
+            paths.add(path);
+            bytes += size;
+        }
+
+        long bytes() {
+            return bytes;
+        }
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        if (executor != null) {
+            executor.shutdown();
+            executor.awaitTermination(60, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -7,9 +7,14 @@ import ru.itmo.backend.evaluator.MetricEvaluationException;
 import java.util.HashMap;
 import java.util.Map;
 
-public record ClassMetric(String name, Map<String, String> own, Map<String, MethodMetric> methods) {
+public record ClassMetric(String name, String packageName, String simpleName, Map<String, MethodMetric> methods) {
+    public ClassMetric(String name, String packageName, String simpleName) {
+        this(name, packageName, simpleName, new HashMap<>());
+    }
+
     public ClassMetric(String name) {
-        this(name, new HashMap<>(), new HashMap<>());
+        this(name, name.contains(".") ? name.substring(0, name.lastIndexOf('.')) : "",
+                name.substring(name.lastIndexOf('.') + 1));
     }
 
     public String toJson() throws MetricEvaluationException {
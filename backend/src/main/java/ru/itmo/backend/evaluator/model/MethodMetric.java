@@ -1,10 +1,55 @@
 package ru.itmo.backend.evaluator.model;
 
-import java.util.HashMap;
-import java.util.Map;
+import ru.itmo.backend.evaluator.lizard.LizardRunner;
 
-public record MethodMetric(String name, Map<String, String> own) {
-    MethodMetric(String name) {
-        this(name, new HashMap<>());
+import java.util.function.Function;
+
+/**
+ * Metrics of a single method.
+ * Numeric metrics are kept in a primitive array indexed by {@link NumericMetric#ordinal()},
+ * textual ones in dedicated fields.
+ */
+public record MethodMetric(String name, int[] values, String fullName, String file, String location, String githubLink) {
+
+    public int value(NumericMetric metric) {
+        return values[metric.ordinal()];
+    }
+
+    /**
+     * Looks up a metric by its code, for callers working with metric codes from the reference.
+     *
+     * @param code metric code, e.g. {@code "NLOC"} or {@code "FILE"}
+     * @return metric value or {@code null} if the method has no such metric
+     */
+    public String get(String code) {
+        return accessor(code).apply(this);
+    }
+
+    /**
+     * Resolves a metric code once, for callers reading the same metric of many methods.
+     *
+     * @param code metric code, e.g. {@code "NLOC"} or {@code "FILE"}
+     * @return function returning the metric value of a method, see {@link #get(String)}
+     */
+    public static Function<MethodMetric, String> accessor(String code) {
+        NumericMetric numeric = NumericMetric.ofCode(code);
+        if (numeric != null) {
+            return method -> String.valueOf(method.value(numeric));
+        }
+        return switch (code) {
+            case LizardRunner.LizardFields.FULL_NAME -> MethodMetric::fullName;
+            case LizardRunner.LizardFields.FILE -> MethodMetric::file;
+            case LizardRunner.LizardFields.LOCATION -> MethodMetric::location;
+            case LizardRunner.LizardFields.GITHUB_LINK -> MethodMetric::githubLink;
+            default -> method -> null;
+        };
+    }
+
+    public MethodMetric withPaths(String file, String location) {
+        return new MethodMetric(name, values, fullName, file, location, githubLink);
+    }
+
+    public MethodMetric withGithubLink(String githubLink) {
+        return new MethodMetric(name, values, fullName, file, location, githubLink);
     }
 }
@@ -0,0 +1,27 @@
+package ru.itmo.backend.evaluator.model;
+
+/**
+ * Numeric metrics of a method. The ordinal is the index of the metric in {@link MethodMetric#values()}.
+ */
+public enum NumericMetric {
+    NLOC, CCN, TKN, PARAM, LENGTH;
+
+    private static final NumericMetric[] VALUES = values();
+
+    public static int count() {
+        return VALUES.length;
+    }
+
+    /**
+     * @param code metric code, e.g. {@code "CCN"}
+     * @return metric with the given code or {@code null} if the code is not a numeric metric
+     */
+    public static NumericMetric ofCode(String code) {
+        for (NumericMetric metric : VALUES) {
+            if (metric.name().equals(code)) {
+                return metric;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,20 @@
+package ru.itmo.backend.evaluator.model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Deduplicates strings repeated across methods of one evaluation, such as file paths and package names.
+ * Not thread-safe.
+ */
+public class StringPool {
+    private final Map<String, String> strings = new HashMap<>();
+
+    public String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        String existing = strings.putIfAbsent(value, value);
+        return existing != null ? existing : value;
+    }
+}
@@ -2,9 +2,15 @@ package ru.itmo.backend.evaluator.utils;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 
@@ -26,4 +32,45 @@ public class FilesUtils {
             return files.filter(Files::isRegularFile).filter(filter).toList();
         }
     }
+
+    /**
+     * Lists files of the repository. Files with known blob ids are listed from {@code blobIds}, since files
+     * with cached results are not necessarily written to disk; otherwise the directory is walked.
+     *
+     * @param blobIds blob ids keyed by file path as returned by {@link #resolveBlobIds}, or {@code null}
+     */
+    public static List<Path> collectPaths(File repository, Predicate<Path> filter, Map<Path, String> blobIds) throws IOException {
+        if (blobIds == null) {
+            return collectPaths(repository, filter);
+        }
+        return blobIds.keySet().stream().filter(filter).toList();
+    }
+
+    /**
+     * @param blobIds blob ids keyed by repository-relative path, or {@code null}
+     * @return blob ids keyed by path of the file in {@code repository}, or {@code null}
+     */
+    public static Map<Path, String> resolveBlobIds(File repository, Map<String, String> blobIds) {
+        if (blobIds == null) {
+            return null;
+        }
+        Path root = repository.toPath();
+        Map<Path, String> resolved = new HashMap<>(blobIds.size() * 2);
+        blobIds.forEach((path, blobId) -> resolved.put(root.resolve(path), blobId));
+        return resolved;
+    }
+
+    /**
+     * Computes the Git blob id of a file, i.e. the SHA-1 of {@code "blob <size>\0"} followed by the content.
+     */
+    public static String gitBlobId(Path file) throws IOException {
+        byte[] content = Files.readAllBytes(file);
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(("blob " + content.length + "\0").getBytes(StandardCharsets.US_ASCII));
+            return HexFormat.of().formatHex(digest.digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
 }
@@ -0,0 +1,45 @@
+package ru.itmo.backend.repo;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.itmo.backend.entity.CommitMetricsEntity;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface CommitMetricsRepository extends JpaRepository<CommitMetricsEntity, Long> {
+
+    /**
+     * Finds stored metrics of a commit.
+     *
+     * @param projectId    project ID
+     * @param commitSha    full commit SHA
+     * @param languageCode evaluator language
+     * @return Optional containing the entity if the commit was already evaluated
+     */
+    Optional<CommitMetricsEntity> findByProjectIdAndCommitShaAndLanguageCode(Long projectId, String commitSha, String languageCode);
+
+    /**
+     * Lists SHAs of the commits of a project that were already evaluated.
+     *
+     * @param projectId    project ID
+     * @param languageCode evaluator language
+     * @return evaluated commit SHAs
+     */
+    @Query("SELECT m.commitSha FROM CommitMetricsEntity m WHERE m.project.id = :projectId AND m.languageCode = :languageCode")
+    List<String> findCommitShas(@Param("projectId") Long projectId, @Param("languageCode") String languageCode);
+
+    /**
+     * Removes all stored metrics of a project.
+     *
+     * @param projectId project ID
+     * @return number of removed entries
+     */
+    @Modifying
+    @Query("DELETE FROM CommitMetricsEntity m WHERE m.project.id = :projectId")
+    int deleteByProjectId(@Param("projectId") Long projectId);
+}
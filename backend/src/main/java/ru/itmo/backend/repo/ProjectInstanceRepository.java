@@ -8,6 +8,7 @@ import org.springframework.stereotype.Repository;
 import ru.itmo.backend.entity.ProjectInstanceEntity;
 
 import jakarta.persistence.LockModeType;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -16,5 +17,7 @@ public interface ProjectInstanceRepository extends JpaRepository<ProjectInstance
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     @Query("SELECT pi FROM ProjectInstanceEntity pi WHERE pi.project.id = :projectId AND pi.isBusy = false ORDER BY pi.lastUsedAt ASC LIMIT 1")
     Optional<ProjectInstanceEntity> findFirstAvailableByProjectId(@Param("projectId") Long projectId);
+
+    List<ProjectInstanceEntity> findByProjectId(Long projectId);
 }
 
@@ -0,0 +1,133 @@
+package ru.itmo.backend.service;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory index of branch histories: commit ordinal to SHA and back.
+ * <p>
+ * An index is keyed by the branch tip it was built from, so a moved branch simply gets a new one.
+ * Only commit ids are kept; commit bodies are parsed on demand for the requested page.
+ * The number of indexed tips is bounded, least recently used ones are dropped first.
+ */
+@Service
+public class CommitHistoryIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(CommitHistoryIndex.class);
+
+    private record Key(Long projectId, ObjectId tip) {
+    }
+
+    /**
+     * History of a branch tip, oldest commit first.
+     */
+    public static class BranchHistory {
+        private final List<ObjectId> commits;
+        private final Map<ObjectId, Integer> ordinals;
+
+        BranchHistory(List<ObjectId> commits) {
+            this.commits = commits;
+            this.ordinals = new HashMap<>(commits.size() * 2);
+            for (int i = 0; i < commits.size(); i++) {
+                ordinals.put(commits.get(i), i);
+            }
+        }
+
+        public int size() {
+            return commits.size();
+        }
+
+        /**
+         * @param ordinal zero-based position, the oldest commit being 0
+         */
+        public ObjectId commitAt(int ordinal) {
+            return commits.get(ordinal);
+        }
+
+        /**
+         * @return position of the commit, or -1 if it is not reachable from the tip
+         */
+        public int ordinalOf(ObjectId commit) {
+            return ordinals.getOrDefault(commit, -1);
+        }
+    }
+
+    private final int maxEntries;
+    private final LinkedHashMap<Key, BranchHistory> histories;
+
+    public CommitHistoryIndex(@Value("${repository.commit-index.max-entries:32}") int maxEntries) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.histories = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, BranchHistory> eldest) {
+                return size() > CommitHistoryIndex.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the history of a branch tip, walking it on first use.
+     *
+     * @param projectId  project ID
+     * @param repository repository of the project
+     * @param tip        commit the branch points to
+     * @return history reachable from {@code tip}
+     * @throws IOException on Git errors
+     */
+    public BranchHistory get(Long projectId, Repository repository, ObjectId tip) throws IOException {
+        Key key = new Key(projectId, tip.copy());
+        synchronized (histories) {
+            BranchHistory cached = histories.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        // Built outside the lock; concurrent builds of the same tip produce equal histories
+        BranchHistory history = build(repository, tip);
+        synchronized (histories) {
+            histories.put(key, history);
+        }
+        return history;
+    }
+
+    private BranchHistory build(Repository repository, ObjectId tip) throws IOException {
+        long start = System.nanoTime();
+        List<ObjectId> commits = new ArrayList<>();
+        try (RevWalk walk = new RevWalk(repository)) {
+            walk.setRetainBody(false);
+            walk.markStart(walk.parseCommit(tip));
+            for (RevCommit commit : walk) {
+                commits.add(commit.copy());
+            }
+        }
+
+        log.info("Indexed {} commits reachable from {} in {} ms",
+                commits.size(), tip.getName(), (System.nanoTime() - start) / 1_000_000);
+        return new BranchHistory(commits.reversed());
+    }
+
+    /**
+     * Drops all indexed histories of a project. Must be called when the project is updated or removed.
+     *
+     * @param projectId project ID
+     */
+    public void evictProject(Long projectId) {
+        synchronized (histories) {
+            histories.keySet().removeIf(key -> key.projectId().equals(projectId));
+        }
+    }
+}
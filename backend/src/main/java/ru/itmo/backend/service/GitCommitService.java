@@ -4,7 +4,9 @@ import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.ListBranchCommand;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
 import org.springframework.stereotype.Service;
 import ru.itmo.backend.dto.response.commit.BranchDTO;
 import ru.itmo.backend.dto.response.commit.CommitDTO;
@@ -12,9 +14,9 @@ import ru.itmo.backend.dto.response.commit.PageResponse;
 import ru.itmo.backend.entity.GitProjectEntity;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.*;
 import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 
 /**
  * Service that provides Git-related operations: listing branches and commits with pagination.
@@ -23,6 +25,7 @@ import java.util.stream.StreamSupport;
  * - Returns short branch names to the frontend.
  * - Resolves both local and remote branches when fetching commits.
  * - Supports pagination for branches and commits.
+ * - Pages through commits using a cached index of the branch history.
  */
 @Service
 public class GitCommitService {
@@ -30,6 +33,12 @@ public class GitCommitService {
     private static final int DEFAULT_PAGE_SIZE = 20;
     private static final int DEFAULT_PAGE = 0;
 
+    private final CommitHistoryIndex historyIndex;
+
+    public GitCommitService(CommitHistoryIndex historyIndex) {
+        this.historyIndex = historyIndex;
+    }
+
     /**
      * Lists branches with pagination. Returns short branch names.
      *
@@ -42,15 +51,7 @@ public class GitCommitService {
     public List<BranchDTO> listBranches(GitProjectEntity project) throws Exception {
         Objects.requireNonNull(project, "project must not be null");
 
-        File projectDir = new File(project.getLocalPath());
-        if (!projectDir.exists()) {
-            throw new IllegalArgumentException("Project directory does not exist: " + project.getLocalPath());
-        }
-        if (!projectDir.isDirectory()) {
-            throw new IllegalArgumentException("Project path is not a directory: " + project.getLocalPath());
-        }
-
-        try (Git git = Git.open(projectDir)) {
+        try (Git git = Git.open(openProjectDir(project))) {
             // list all branches (local + remote)
             List<Ref> refs = git.branchList().setListMode(ListBranchCommand.ListMode.ALL).call();
 
@@ -87,6 +88,37 @@ public class GitCommitService {
                 .findFirst();
     }
 
+    /**
+     * Gets the short name of the branch checked out in the main repository, which is the default branch of a clone.
+     *
+     * @return branch name, or empty if HEAD is detached
+     */
+    public Optional<String> getDefaultBranch(GitProjectEntity project) throws Exception {
+        Objects.requireNonNull(project, "project must not be null");
+
+        try (Git git = Git.open(openProjectDir(project))) {
+            String branch = git.getRepository().getBranch();
+            return branch == null || ObjectId.isId(branch) ? Optional.empty() : Optional.of(branch);
+        }
+    }
+
+    /**
+     * Resolves the commit a branch points to, e.g. to tell whether responses derived from the branch have changed.
+     *
+     * @param project Git project entity
+     * @param branch  short branch name
+     * @return full SHA of the branch tip
+     * @throws IllegalArgumentException if the branch does not exist
+     */
+    public String getBranchTip(GitProjectEntity project, String branch) throws Exception {
+        Objects.requireNonNull(project, "project must not be null");
+        if (branch == null || branch.isBlank()) throw new IllegalArgumentException("branch must be provided");
+
+        try (Git git = Git.open(openProjectDir(project))) {
+            return resolveBranch(git.getRepository(), branch).getName();
+        }
+    }
+
     /**
      * Lists commits of a branch with pagination.
      *
@@ -95,6 +127,8 @@ public class GitCommitService {
      * 2. refs/heads/<branch>
      * 3. refs/remotes/origin/<branch>
      *
+     * Only commits of the requested page are parsed; the branch history itself comes from {@link CommitHistoryIndex}.
+     *
      * @param project Git project entity
      * @param branch short branch name
      * @param page zero-based page index
@@ -106,90 +140,124 @@ public class GitCommitService {
         Objects.requireNonNull(project, "project must not be null");
         if (branch == null || branch.isBlank()) throw new IllegalArgumentException("branch must be provided");
 
-        File projectDir = new File(project.getLocalPath());
-        if (!projectDir.exists()) {
-            throw new IllegalArgumentException("Project directory does not exist: " + project.getLocalPath());
-        }
-        if (!projectDir.isDirectory()) {
-            throw new IllegalArgumentException("Project path is not a directory: " + project.getLocalPath());
-        }
-
-        try (Git git = Git.open(projectDir)) {
-            var repo = git.getRepository();
-
-            // try resolving short name, local, then remote
-            List<String> candidates = List.of(
-                    branch,
-                    "refs/heads/" + branch,
-                    "refs/remotes/origin/" + branch
-            );
+        // Normalize page and pageSize to default values if invalid
+        pageSize = pageSize <= 0 ? DEFAULT_PAGE_SIZE : pageSize;
+        page = page < 0 ? DEFAULT_PAGE : page;
 
-            ObjectId resolved = null;
-            for (String c : candidates) {
-                resolved = repo.resolve(c);
-                if (resolved != null) break;
-            }
+        try (Git git = Git.open(openProjectDir(project))) {
+            Repository repo = git.getRepository();
+            CommitHistoryIndex.BranchHistory history =
+                    historyIndex.get(project.getId(), repo, resolveBranch(repo, branch));
 
-            if (resolved == null) {
-                throw new IllegalArgumentException("Branch not found: " + branch);
-            }
+            int total = history.size();
+            int start = (int) Math.min((long) page * pageSize, total);
+            int end = (int) Math.min((long) (page + 1) * pageSize, total);
 
-            Iterable<RevCommit> commitsIterable = git.log().add(resolved).call();
-
-            // materialize list for pagination
-            List<RevCommit> allCommits = StreamSupport.stream(commitsIterable.spliterator(), false)
-                    .toList().reversed();
-
-            int totalCount = allCommits.size();
-            List<CommitDTO> allCommitDTOs = new ArrayList<>();
-            for (int i = 0; i < totalCount; i++) {
-                RevCommit c = allCommits.get(i);
-                allCommitDTOs.add(new CommitDTO(
-                        c.getName(),
-                        c.getFullMessage(),
-                        c.getAuthorIdent() != null ? c.getAuthorIdent().getName() : null,
-                        ((long) c.getCommitTime()) * 1000L,
-                        totalCount - i // Commit number (1-based, descending)
-                ));
+            List<CommitDTO> items = new ArrayList<>(end - start);
+            try (RevWalk walk = new RevWalk(repo)) {
+                for (int i = start; i < end; i++) {
+                    items.add(toDto(walk.parseCommit(history.commitAt(i)), total - i));
+                }
             }
 
-            return paginate(allCommitDTOs, page, pageSize, CommitDTO.class);
+            return new PageResponse<>(items, page, pageSize, total);
         }
     }
 
     /**
      * Gets a specific commit by SHA.
+     * The commit must be reachable from the branch.
      */
     public Optional<CommitDTO> getCommit(GitProjectEntity project, String branch, String sha) throws Exception {
-        // This is a simple implementation, might need optimization if many commits
-        return listCommits(project, branch, 0, Integer.MAX_VALUE).items().stream()
-                .filter(c -> c.sha().equals(sha))
-                .findFirst();
+        Objects.requireNonNull(project, "project must not be null");
+        if (branch == null || branch.isBlank()) throw new IllegalArgumentException("branch must be provided");
+        if (sha == null || !ObjectId.isId(sha)) {
+            return Optional.empty();
+        }
+
+        try (Git git = Git.open(openProjectDir(project))) {
+            Repository repo = git.getRepository();
+            CommitHistoryIndex.BranchHistory history =
+                    historyIndex.get(project.getId(), repo, resolveBranch(repo, branch));
+
+            ObjectId id = ObjectId.fromString(sha);
+            int ordinal = history.ordinalOf(id);
+            if (ordinal < 0) {
+                return Optional.empty();
+            }
+
+            try (RevWalk walk = new RevWalk(repo)) {
+                return Optional.of(toDto(walk.parseCommit(id), history.size() - ordinal));
+            }
+        }
     }
 
     /**
-     * Applies pagination to a list of items.
-     * Normalizes page and pageSize to default values if invalid.
+     * Samples commits of a branch at a fixed stride, counting back from the tip, which is always included.
      *
-     * @param <T> type of items in the list
-     * @param allItems complete list of items to paginate
-     * @param page zero-based page index (normalized to >= 0)
-     * @param pageSize number of items per page (normalized to > 0)
-     * @param itemType class of items (for type inference)
-     * @return paginated response with items for the requested page
+     * @param project    Git project entity
+     * @param branch     short branch name
+     * @param stride     distance between sampled commits, in commits
+     * @param maxCommits maximum number of sampled commits; the oldest ones are dropped
+     * @return sampled commits, oldest first
+     * @throws Exception on Git errors
      */
-    private <T> PageResponse<T> paginate(List<T> allItems, int page, int pageSize, Class<T> itemType) {
-        long total = allItems.size();
-        
-        // Normalize page and pageSize to default values if invalid
-        pageSize = pageSize <= 0 ? DEFAULT_PAGE_SIZE : pageSize;
-        page = page < 0 ? DEFAULT_PAGE : page;
+    public List<CommitDTO> sampleCommits(GitProjectEntity project, String branch, int stride, int maxCommits) throws Exception {
+        Objects.requireNonNull(project, "project must not be null");
+        if (branch == null || branch.isBlank()) throw new IllegalArgumentException("branch must be provided");
+        if (stride <= 0) throw new IllegalArgumentException("stride must be positive");
+
+        try (Git git = Git.open(openProjectDir(project))) {
+            Repository repo = git.getRepository();
+            CommitHistoryIndex.BranchHistory history =
+                    historyIndex.get(project.getId(), repo, resolveBranch(repo, branch));
 
-        int start = (int) Math.min((long) page * pageSize, allItems.size());
-        int end = (int) Math.min((long) (page + 1) * pageSize, allItems.size());
+            int total = history.size();
+            List<CommitDTO> sampled = new ArrayList<>();
+            try (RevWalk walk = new RevWalk(repo)) {
+                for (int i = total - 1; i >= 0 && sampled.size() < maxCommits; i -= stride) {
+                    sampled.add(toDto(walk.parseCommit(history.commitAt(i)), total - i));
+                }
+            }
+            return sampled.reversed();
+        }
+    }
 
-        List<T> items = allItems.subList(start, end);
+    private static File openProjectDir(GitProjectEntity project) {
+        File projectDir = new File(project.getLocalPath());
+        if (!projectDir.exists()) {
+            throw new IllegalArgumentException("Project directory does not exist: " + project.getLocalPath());
+        }
+        if (!projectDir.isDirectory()) {
+            throw new IllegalArgumentException("Project path is not a directory: " + project.getLocalPath());
+        }
+        return projectDir;
+    }
+
+    private static ObjectId resolveBranch(Repository repo, String branch) throws IOException {
+        // try resolving short name, local, then remote
+        List<String> candidates = List.of(
+                branch,
+                "refs/heads/" + branch,
+                "refs/remotes/origin/" + branch
+        );
+
+        for (String c : candidates) {
+            ObjectId resolved = repo.resolve(c);
+            if (resolved != null) {
+                return resolved;
+            }
+        }
+        throw new IllegalArgumentException("Branch not found: " + branch);
+    }
 
-        return new PageResponse<>(items, page, pageSize, total);
+    private static CommitDTO toDto(RevCommit c, int number) {
+        return new CommitDTO(
+                c.getName(),
+                c.getFullMessage(),
+                c.getAuthorIdent() != null ? c.getAuthorIdent().getName() : null,
+                ((long) c.getCommitTime()) * 1000L,
+                number // Commit number (1-based, descending)
+        );
     }
 }
@@ -1,71 +1,328 @@
 package ru.itmo.backend.service;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import ru.itmo.backend.config.metrics.MetricsService;
 import ru.itmo.backend.entity.ProjectInstanceEntity;
 import ru.itmo.backend.repo.ProjectInstanceRepository;
+import ru.itmo.backend.service.downloader.ProjectInstanceProvisioner;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+/**
+ * Hands out project instances to analyses.
+ * <p>
+ * Free instances of each project are tracked in memory. Requests that find no free instance
+ * wait in a FIFO queue and receive an instance directly from {@link #releaseInstance(Long)}.
+ * The {@code isBusy} flag in the database is kept up to date as durable state only.
+ * <p>
+ * The pool of each project is elastic: waiting requests make the {@link ProjectInstanceProvisioner}
+ * create more instances, and instances idle for too long are removed periodically.
+ */
 @Service
 @Slf4j
 public class ProjectInstanceArbitrator {
 
     private final ProjectInstanceRepository instanceRepository;
+    private final MetricsService metricsService;
+    private final ProjectInstanceProvisioner provisioner;
+    private final Duration acquireTimeout;
 
-    public ProjectInstanceArbitrator(ProjectInstanceRepository instanceRepository) {
+    private final Map<Long, ProjectPool> pools = new ConcurrentHashMap<>();
+    private final Map<Long, Long> instanceProjects = new ConcurrentHashMap<>();
+
+    public ProjectInstanceArbitrator(ProjectInstanceRepository instanceRepository, MetricsService metricsService,
+                                     ProjectInstanceProvisioner provisioner,
+                                     @Value("${repository.instances.acquire-timeout-seconds:30}") long acquireTimeoutSeconds) {
         this.instanceRepository = instanceRepository;
+        this.metricsService = metricsService;
+        this.provisioner = provisioner;
+        this.acquireTimeout = Duration.ofSeconds(acquireTimeoutSeconds);
+    }
+
+    /**
+     * Free instances and waiting requests of a single project.
+     * Invariant: {@code waiters} is empty whenever {@code free} is not.
+     */
+    private static class ProjectPool {
+        private final Deque<Long> free = new ArrayDeque<>();
+        private final Deque<CompletableFuture<Long>> waiters = new ArrayDeque<>();
+        /**
+         * Number of instances of the project, free or busy
+         */
+        private int size;
+        /**
+         * Number of instances being created
+         */
+        private int provisioning;
     }
 
     /**
      * Acquires a free instance for the given project.
-     * Uses pessimistic locking via repository to avoid race conditions.
-     * 
+     * If all instances are busy, waits in FIFO order until one is released.
+     *
      * @param projectId project ID
      * @return an available project instance
      * @throws InterruptedException if thread is interrupted while waiting
-     * @throws RuntimeException if no instance is available after retries
+     * @throws RuntimeException if no instance becomes available within the timeout
      */
-    @Transactional
     public ProjectInstanceEntity acquireInstance(Long projectId) throws InterruptedException {
-        int maxRetries = 30; // Wait up to 30 seconds
-        for (int i = 0; i < maxRetries; i++) {
-            Optional<ProjectInstanceEntity> available = instanceRepository.findFirstAvailableByProjectId(projectId);
-            if (available.isPresent()) {
-                ProjectInstanceEntity instance = available.get();
-                instance.setBusy(true);
-                ProjectInstanceEntity saved = instanceRepository.save(instance);
-                log.info("Acquired instance {} (path: {}) for project {}", 
+        long deadline = System.nanoTime() + acquireTimeout.toNanos();
+        long start = System.nanoTime();
+        try {
+            while (true) {
+                Long instanceId = takeInstance(projectId, deadline);
+                Optional<ProjectInstanceEntity> instance = instanceRepository.findById(instanceId);
+                if (instance.isEmpty()) {
+                    // Removed from the database since the pool was loaded
+                    instanceProjects.remove(instanceId);
+                    continue;
+                }
+
+                ProjectInstanceEntity entity = instance.get();
+                entity.setBusy(true);
+                ProjectInstanceEntity saved;
+                try {
+                    saved = instanceRepository.save(entity);
+                } catch (RuntimeException e) {
+                    returnToPool(instanceId);
+                    throw e;
+                }
+                log.info("Acquired instance {} (path: {}) for project {}",
                         saved.getId(), saved.getLocalPath(), projectId);
                 return saved;
             }
-            
-            log.warn("No free instances for project {}, retry {}/{} (waiting for parallel analysis to finish)", 
-                    projectId, i + 1, maxRetries);
-            TimeUnit.SECONDS.sleep(1);
+        } finally {
+            metricsService.recordInstanceWait(Duration.ofNanos(System.nanoTime() - start));
+        }
+    }
+
+    private Long takeInstance(Long projectId, long deadline) throws InterruptedException {
+        ProjectPool pool = poolFor(projectId);
+        CompletableFuture<Long> ticket = new CompletableFuture<>();
+        int position;
+        boolean grow;
+        synchronized (pool) {
+            Long free = pool.free.pollFirst();
+            if (free != null) {
+                return free;
+            }
+            pool.waiters.addLast(ticket);
+            position = pool.waiters.size();
+            // One new instance per waiting request, as long as the project is below its maximum
+            grow = pool.provisioning < position && pool.size + pool.provisioning < provisioner.getMaxInstances();
+            if (grow) {
+                pool.provisioning++;
+            }
+        }
+
+        log.info("No free instances for project {}, waiting in queue (position {})", projectId, position);
+        metricsService.recordInstanceQueued();
+        if (grow) {
+            grow(projectId, pool);
+        }
+        try {
+            return ticket.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            Long handedOff = withdraw(pool, ticket);
+            if (handedOff != null) {
+                return handedOff;
+            }
+            log.error("Failed to acquire instance for project {} within {}", projectId, acquireTimeout);
+            throw new RuntimeException("Timeout waiting for a free project instance for project ID: " + projectId);
+        } catch (InterruptedException e) {
+            Long handedOff = withdraw(pool, ticket);
+            if (handedOff != null) {
+                handOff(pool, handedOff);
+            }
+            throw e;
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Project " + projectId + " was removed while waiting for an instance", e.getCause());
+        } finally {
+            metricsService.recordInstanceDequeued();
         }
-        
-        log.error("Failed to acquire instance for project {} after {} retries", projectId, maxRetries);
-        throw new RuntimeException("Timeout waiting for a free project instance for project ID: " + projectId);
     }
 
     /**
-     * Releases a previously acquired instance.
-     * 
+     * Removes a ticket from the queue.
+     *
+     * @return instance that was handed to the ticket concurrently, if any
+     */
+    private Long withdraw(ProjectPool pool, CompletableFuture<Long> ticket) {
+        synchronized (pool) {
+            if (pool.waiters.remove(ticket)) {
+                return null;
+            }
+        }
+        return ticket.isDone() && !ticket.isCompletedExceptionally() ? ticket.join() : null;
+    }
+
+    private ProjectPool poolFor(Long projectId) {
+        return pools.computeIfAbsent(projectId, id -> {
+            List<ProjectInstanceEntity> instances = instanceRepository.findByProjectId(id);
+            ProjectPool pool = new ProjectPool();
+            instances.stream()
+                    .sorted(Comparator.comparing(ProjectInstanceEntity::getLastUsedAt,
+                            Comparator.nullsFirst(Comparator.naturalOrder())))
+                    .forEach(instance -> {
+                        if (instance.isBusy()) {
+                            // No instance is in use before the pool is loaded, the flag is left from a previous run
+                            log.warn("Instance {} of project {} was marked busy, treating it as free", instance.getId(), id);
+                        }
+                        pool.free.addLast(instance.getId());
+                        instanceProjects.put(instance.getId(), id);
+                    });
+            pool.size = instances.size();
+            metricsService.recordInstancePoolSize(id, pool.size);
+            log.info("Loaded {} instances of project {}", instances.size(), id);
+            return pool;
+        });
+    }
+
+    private void grow(Long projectId, ProjectPool pool) {
+        log.info("Provisioning a new instance for project {}", projectId);
+        provisioner.provision(projectId).whenComplete((instance, error) -> {
+            boolean evicted;
+            synchronized (pool) {
+                pool.provisioning--;
+                evicted = pools.get(projectId) != pool;
+                if (error == null && !evicted) {
+                    pool.size++;
+                    instanceProjects.put(instance.getId(), projectId);
+                    metricsService.recordInstancePoolSize(projectId, pool.size);
+                }
+            }
+
+            if (error != null) {
+                log.warn("Failed to provision an instance for project {}: {}", projectId, error.getMessage());
+            } else if (evicted) {
+                provisioner.retire(instance);
+            } else {
+                handOff(pool, instance.getId());
+            }
+        });
+    }
+
+    private void handOff(ProjectPool pool, Long instanceId) {
+        synchronized (pool) {
+            CompletableFuture<Long> waiter;
+            while ((waiter = pool.waiters.pollFirst()) != null) {
+                if (waiter.complete(instanceId)) {
+                    return;
+                }
+            }
+            pool.free.addLast(instanceId);
+        }
+    }
+
+    /**
+     * Releases a previously acquired instance, handing it to the longest waiting request if there is one.
+     *
      * @param instanceId instance ID
      */
-    @Transactional
     public void releaseInstance(Long instanceId) {
         instanceRepository.findById(instanceId).ifPresentOrElse(instance -> {
             instance.setBusy(false);
             instance.setLastUsedAt(LocalDateTime.now());
             instanceRepository.save(instance);
-            log.info("Released instance {} for project {}. Now available for next tasks.", 
+            log.info("Released instance {} for project {}. Now available for next tasks.",
                     instanceId, instance.getProject().getId());
         }, () -> log.error("Attempted to release non-existent instance {}", instanceId));
+
+        returnToPool(instanceId);
+    }
+
+    private void returnToPool(Long instanceId) {
+        Long projectId = instanceProjects.get(instanceId);
+        ProjectPool pool = projectId != null ? pools.get(projectId) : null;
+        if (pool != null) {
+            handOff(pool, instanceId);
+        }
+    }
+
+    /**
+     * Tells whether a project has a free instance and nobody waiting for one.
+     * Background work should only start when this holds, so that it never delays interactive requests.
+     *
+     * @param projectId project ID
+     */
+    public boolean hasSpareInstance(Long projectId) {
+        ProjectPool pool = poolFor(projectId);
+        synchronized (pool) {
+            return !pool.free.isEmpty() && pool.waiters.isEmpty();
+        }
+    }
+
+    /**
+     * Removes free instances that were not used for longer than the idle timeout,
+     * keeping at least the minimum number of instances per project.
+     */
+    @Scheduled(fixedDelayString = "${repository.instances.shrink-interval-ms:60000}")
+    public void shrinkIdlePools() {
+        LocalDateTime idleBefore = LocalDateTime.now().minus(provisioner.getIdleTimeout());
+        pools.forEach((projectId, pool) -> {
+            List<Long> candidates;
+            synchronized (pool) {
+                if (pool.size <= provisioner.getMinInstances()) {
+                    return;
+                }
+                candidates = List.copyOf(pool.free);
+            }
+
+            for (Long instanceId : candidates) {
+                Optional<ProjectInstanceEntity> instance = instanceRepository.findById(instanceId);
+                if (instance.isEmpty() || !isIdle(instance.get(), idleBefore)) {
+                    continue;
+                }
+
+                synchronized (pool) {
+                    if (pool.size <= provisioner.getMinInstances() || !pool.free.remove(instanceId)) {
+                        continue;
+                    }
+                    pool.size--;
+                    instanceProjects.remove(instanceId);
+                    metricsService.recordInstancePoolSize(projectId, pool.size);
+                }
+                provisioner.retire(instance.get());
+            }
+        });
+    }
+
+    private static boolean isIdle(ProjectInstanceEntity instance, LocalDateTime idleBefore) {
+        return instance.getLastUsedAt() == null || instance.getLastUsedAt().isBefore(idleBefore);
     }
-}
 
+    /**
+     * Forgets all instances of a project. Requests waiting for them fail.
+     * Must be called when instances of a project are removed.
+     *
+     * @param projectId project ID
+     */
+    public void evictProject(Long projectId) {
+        ProjectPool pool = pools.remove(projectId);
+        instanceProjects.values().removeIf(projectId::equals);
+        metricsService.removeInstancePool(projectId);
+        if (pool != null) {
+            synchronized (pool) {
+                pool.waiters.forEach(waiter -> waiter.completeExceptionally(
+                        new IllegalStateException("Instances of project " + projectId + " were removed")));
+                pool.waiters.clear();
+                pool.free.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package ru.itmo.backend.service.analysis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import ru.itmo.backend.dto.response.analysis.CommitMetricsDTO;
+import ru.itmo.backend.dto.response.commit.CommitDTO;
+import ru.itmo.backend.entity.GitProjectEntity;
+import ru.itmo.backend.service.downloader.ProjectInstanceProvisioner;
+import ru.itmo.backend.service.jobs.Job;
+import ru.itmo.backend.service.jobs.JobService;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs commit analyses as asynchronous jobs.
+ * <p>
+ * Requests for the same commit, language and metrics share one job while it is running.
+ * Each project runs at most as many analyses at once as it may have instances; the rest are queued.
+ */
+@Service
+public class AnalysisJobService implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(AnalysisJobService.class);
+    private static final String JOB_TYPE = "commit-analysis";
+    private static final String STAGE_ANALYZING = "Analyzing";
+
+    private record AnalysisKey(Long projectId, String commitSha, String language, List<String> metrics) {
+    }
+
+    private final CodeAnalysisService codeAnalysisService;
+    private final JobService jobService;
+    private final int concurrencyPerProject;
+
+    private final Map<AnalysisKey, Job<CommitMetricsDTO>> activeJobs = new ConcurrentHashMap<>();
+    private final Map<Long, ExecutorService> projectExecutors = new ConcurrentHashMap<>();
+
+    public AnalysisJobService(CodeAnalysisService codeAnalysisService, JobService jobService,
+                              ProjectInstanceProvisioner provisioner) {
+        this.codeAnalysisService = codeAnalysisService;
+        this.jobService = jobService;
+        this.concurrencyPerProject = provisioner.getMaxInstances();
+    }
+
+    /**
+     * Starts metrics evaluation of a commit, or joins the running evaluation of the same commit.
+     *
+     * @param project Git project entity
+     * @param commit  commit to evaluate
+     * @param metrics requested metrics
+     * @return job producing the commit metrics
+     */
+    public Job<CommitMetricsDTO> submit(GitProjectEntity project, CommitDTO commit, List<String> metrics) {
+        AnalysisKey key = new AnalysisKey(project.getId(), commit.sha(), project.getLanguageCode(),
+                metrics.stream().sorted().distinct().toList());
+
+        Job<CommitMetricsDTO> job = activeJobs.compute(key, (k, running) -> {
+            if (running != null && !running.getStatus().isFinished()) {
+                log.debug("Joining running analysis {} of commit {}", running.getId(), commit.sha());
+                return running;
+            }
+            return jobService.submit(JOB_TYPE, progress -> {
+                progress.report(STAGE_ANALYZING, 0, 0);
+                return codeAnalysisService.getCommitMetrics(project, commit, metrics);
+            }, executorFor(project.getId()));
+        });
+
+        job.subscribe(state -> {
+            if (state.status().isFinished()) {
+                activeJobs.remove(key, job);
+            }
+        });
+        return job;
+    }
+
+    private ExecutorService executorFor(Long projectId) {
+        return projectExecutors.computeIfAbsent(projectId, id -> {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(concurrencyPerProject, concurrencyPerProject,
+                    60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    new CustomizableThreadFactory("analysis-" + id + "-"));
+            // Projects without pending analyses keep no threads
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        });
+    }
+
+    /**
+     * Shuts down the executor of a project. Analyses already submitted still run; later ones get a new executor.
+     * Must be called when a project is removed.
+     *
+     * @param projectId project ID
+     */
+    public void evictProject(Long projectId) {
+        ExecutorService executor = projectExecutors.remove(projectId);
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        for (ExecutorService executor : projectExecutors.values()) {
+            executor.shutdown();
+        }
+        for (ExecutorService executor : projectExecutors.values()) {
+            executor.awaitTermination(60, TimeUnit.SECONDS);
+        }
+    }
+}
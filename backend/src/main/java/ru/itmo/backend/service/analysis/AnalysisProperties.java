@@ -0,0 +1,120 @@
+package ru.itmo.backend.service.analysis;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "analysis")
+@Data
+public class AnalysisProperties {
+
+    private Incremental incremental = new Incremental();
+
+    private Lizard lizard = new Lizard();
+
+    private CheckoutFree checkoutFree = new CheckoutFree();
+
+    private BlobCache blobCache = new BlobCache();
+
+    private PreAnalysis preAnalysis = new PreAnalysis();
+
+    private Timeline timeline = new Timeline();
+
+    @Data
+    public static class Incremental {
+        /**
+         * Whether a commit may be evaluated as a delta over an already evaluated ancestor.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Maximum number of ancestors inspected when looking for an evaluated one.
+         */
+        private int maxDepth = 100;
+    }
+
+    @Data
+    public static class Lizard {
+        /**
+         * Maximum number of Lizard processes running at once, shared by all analyses.
+         */
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * Minimum total size of source files handed to a single Lizard process.
+         * Smaller inputs are not split, as process startup would dominate.
+         */
+        private long minShardBytes = 512 * 1024;
+    }
+
+    @Data
+    public static class CheckoutFree {
+        /**
+         * Whether commits are analyzed from files written straight from the object database
+         * instead of a checked out instance.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Directory for files written for analysis; a tmpfs mount works well here.
+         */
+        private String scratchPath = System.getProperty("java.io.tmpdir") + "/babel-analysis";
+    }
+
+    @Data
+    public static class BlobCache {
+        /**
+         * Whether Lizard results of individual files are reused for files with the same content.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Directory holding stored results, next to the cloned projects in {@code repository.storage.path}
+         * so that both share the same volume.
+         */
+        private String path = "./data/repos/blob-metrics";
+
+        /**
+         * Maximum total size of stored results; least recently used ones are removed first.
+         */
+        private long maxSizeMb = 512;
+    }
+
+    @Data
+    public static class PreAnalysis {
+        /**
+         * Whether branch heads are analyzed in the background after a project is cloned or updated.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Maximum number of branch heads analyzed per clone or update; the default branch goes first.
+         */
+        private int maxBranches = 10;
+
+        /**
+         * Delay before retrying a head while other evaluations are running or the project has no spare instance.
+         */
+        private long retryDelayMs = 30_000;
+
+        /**
+         * Number of retries after which a head is left to be analyzed on demand.
+         */
+        private int maxRetries = 20;
+    }
+
+    @Data
+    public static class Timeline {
+        /**
+         * Maximum number of history segments of a timeline evaluated at once.
+         * Commits within a segment are evaluated oldest first, each one incrementally over the previous one.
+         */
+        private int parallelism = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+        /**
+         * Maximum number of commits in a timeline.
+         */
+        private int maxPoints = 200;
+    }
+}
@@ -0,0 +1,240 @@
+package ru.itmo.backend.service.analysis;
+
+import com.opencsv.CSVParserBuilder;
+import com.opencsv.CSVReader;
+import com.opencsv.CSVReaderBuilder;
+import com.opencsv.CSVWriter;
+import com.opencsv.exceptions.CsvValidationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import ru.itmo.backend.config.metrics.MetricsService;
+import ru.itmo.backend.evaluator.lizard.LizardRecord;
+import ru.itmo.backend.evaluator.lizard.LizardResultCache;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * On-disk store of per-file Lizard results keyed by Git blob id.
+ * <p>
+ * A blob id identifies file content, so results stay valid across commits, branches and projects:
+ * only files whose content was never analyzed before reach Lizard. Each blob is stored as a small CSV
+ * file under {@code <path>/<language>/<first two id chars>/<id>.csv}. The total size is bounded;
+ * least recently used entries are removed first.
+ */
+@Service
+public class BlobMetricsCache implements LizardResultCache {
+
+    private static final Logger log = LoggerFactory.getLogger(BlobMetricsCache.class);
+    private static final String EXTENSION = ".csv";
+
+    private final Path root;
+    private final long maxSizeBytes;
+    private final MetricsService metricsService;
+
+    /**
+     * Sizes of stored entries in access order, guarded by {@code this}
+     */
+    private final LinkedHashMap<Path, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    public BlobMetricsCache(AnalysisProperties analysisProperties, MetricsService metricsService) {
+        AnalysisProperties.BlobCache properties = analysisProperties.getBlobCache();
+        this.root = Path.of(properties.getPath()).toAbsolutePath().normalize();
+        this.maxSizeBytes = properties.getMaxSizeMb() * 1024 * 1024;
+        this.metricsService = metricsService;
+        if (properties.isEnabled()) {
+            loadIndex();
+        }
+    }
+
+    private void loadIndex() {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(root)) {
+            files = walk.filter(file -> file.getFileName().toString().endsWith(EXTENSION)).toList();
+        } catch (IOException e) {
+            log.warn("Unable to read blob metrics cache at {}: {}", root, e.getMessage());
+            return;
+        }
+
+        Map<Path, FileTime> modified = new LinkedHashMap<>();
+        for (Path file : files) {
+            try {
+                modified.put(file, Files.getLastModifiedTime(file));
+            } catch (IOException e) {
+                log.debug("Skipping blob metrics entry {}: {}", file, e.getMessage());
+            }
+        }
+
+        synchronized (this) {
+            modified.entrySet().stream()
+                    .sorted(Map.Entry.comparingByValue(Comparator.naturalOrder()))
+                    .forEach(entry -> register(entry.getKey(), sizeOf(entry.getKey())));
+            evict();
+        }
+        log.info("Loaded {} blob metrics entries ({} KB) from {}", entries.size(), totalBytes / 1024, root);
+    }
+
+    @Override
+    public Optional<List<LizardRecord>> get(String language, String blobId) {
+        Path file = entryPath(language, blobId);
+        synchronized (this) {
+            if (!entries.containsKey(file)) {
+                metricsService.recordBlobCacheMiss();
+                return Optional.empty();
+            }
+            // Moves the entry to the most recently used end
+            entries.get(file);
+        }
+
+        try {
+            List<LizardRecord> records = read(file);
+            touch(file);
+            metricsService.recordBlobCacheHit();
+            return Optional.of(records);
+        } catch (NoSuchFileException e) {
+            unregister(file);
+        } catch (IOException | CsvValidationException | RuntimeException e) {
+            log.warn("Discarding unreadable blob metrics entry {}: {}", file, e.getMessage());
+            unregister(file);
+            delete(file);
+        }
+        metricsService.recordBlobCacheMiss();
+        return Optional.empty();
+    }
+
+    @Override
+    public void put(String language, String blobId, List<LizardRecord> records) {
+        Path file = entryPath(language, blobId);
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), blobId, ".tmp");
+            try {
+                write(temp, records);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            log.warn("Unable to store blob metrics entry {}: {}", file, e.getMessage());
+            return;
+        }
+
+        synchronized (this) {
+            register(file, sizeOf(file));
+            evict();
+        }
+    }
+
+    private Path entryPath(String language, String blobId) {
+        return root.resolve(language).resolve(blobId.substring(0, 2)).resolve(blobId + EXTENSION);
+    }
+
+    private static List<LizardRecord> read(Path file) throws IOException, CsvValidationException {
+        List<LizardRecord> records = new ArrayList<>();
+        // CSVWriter escapes quotes by doubling them; the default reader would also treat backslashes as escapes
+        try (Reader raw = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+             CSVReader reader = new CSVReaderBuilder(raw)
+                     .withCSVParser(new CSVParserBuilder().withEscapeChar('\0').build())
+                     .build()) {
+            String[] line;
+            while ((line = reader.readNext()) != null) {
+                records.add(new LizardRecord(
+                        Integer.parseInt(line[0]),
+                        Integer.parseInt(line[1]),
+                        Integer.parseInt(line[2]),
+                        Integer.parseInt(line[3]),
+                        Integer.parseInt(line[4]),
+                        line[5],
+                        "",
+                        line[6]));
+            }
+        }
+        return records;
+    }
+
+    private static void write(Path file, List<LizardRecord> records) throws IOException {
+        try (Writer raw = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+             CSVWriter writer = new CSVWriter(raw)) {
+            for (LizardRecord record : records) {
+                // The path is not part of the content; it is restored by LizardRecord.relocate on read
+                LizardRecord detached = record.relocate("");
+                writer.writeNext(new String[]{
+                        String.valueOf(detached.nloc()),
+                        String.valueOf(detached.ccn()),
+                        String.valueOf(detached.tokens()),
+                        String.valueOf(detached.params()),
+                        String.valueOf(detached.length()),
+                        detached.location(),
+                        detached.fullName()
+                });
+            }
+        }
+    }
+
+    private void register(Path file, long size) {
+        Long previous = entries.put(file, size);
+        totalBytes += size - (previous != null ? previous : 0);
+    }
+
+    private synchronized void unregister(Path file) {
+        Long size = entries.remove(file);
+        if (size != null) {
+            totalBytes -= size;
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<Path, Long>> iterator = entries.entrySet().iterator();
+        while (totalBytes > maxSizeBytes && iterator.hasNext()) {
+            Map.Entry<Path, Long> eldest = iterator.next();
+            iterator.remove();
+            totalBytes -= eldest.getValue();
+            delete(eldest.getKey());
+        }
+    }
+
+    private static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // Only affects the eviction order after a restart
+        }
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.debug("Unable to delete blob metrics entry {}: {}", file, e.getMessage());
+        }
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
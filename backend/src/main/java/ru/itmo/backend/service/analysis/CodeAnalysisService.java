@@ -1,11 +1,16 @@
 package ru.itmo.backend.service.analysis;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.eclipse.jgit.diff.DiffEntry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
 
+import ru.itmo.backend.config.metrics.MetricsService;
 import ru.itmo.backend.dto.response.analysis.*;
 import ru.itmo.backend.dto.response.commit.CommitDTO;
 import ru.itmo.backend.dto.response.reference.MetricDTO;
@@ -16,183 +21,525 @@ import ru.itmo.backend.service.downloader.GitClient;
 import ru.itmo.backend.evaluator.MetricEvaluationException;
 import ru.itmo.backend.evaluator.MetricEvaluator;
 import ru.itmo.backend.evaluator.MetricEvaluators;
+import ru.itmo.backend.evaluator.lizard.ShardedLizardRunner;
 import ru.itmo.backend.evaluator.model.ClassMetric;
+import ru.itmo.backend.evaluator.model.MethodMetric;
+import ru.itmo.backend.evaluator.model.NumericMetric;
+import ru.itmo.backend.evaluator.model.StringPool;
+import ru.itmo.backend.exception.GitOperationException;
 import ru.itmo.backend.service.reference.ReferenceProperties;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
  * Service responsible for code analysis.
  * <p>
- * Currently, provides stubbed (fake) metrics for testing purposes.
- * In the future, real analysis logic (AST, metrics, complexity) will replace the stubs.
+ * Commits are evaluated by the metric evaluator of the project language. Results are stored in
+ * {@link CommitMetricsCache} and served from there on later requests. A commit with an already evaluated
+ * ancestor is evaluated incrementally: only files changed since the ancestor are analyzed. Files are written
+ * straight from the object database into a scratch directory, so no instance has to be checked out; an
+ * instance is only used when the object database cannot be read. Two commits are compared by evaluating
+ * only the files that differ between them and diffing the metrics of their methods.
  */
 @Service
 public class CodeAnalysisService {
    static final List<String> METRICS_LIST = List.of("NLOC"); // TODO: merge with language DTO
 
+    /**
+     * Version of evaluation results and of the responses built from them.
+     * Must be increased whenever either changes, so that clients do not keep responses of the previous version.
+     */
+    public static final int METRICS_VERSION = 1;
+
     private static final HttpClient HTTP_CLIENT = HttpClient.newHttpClient();
     private static final ObjectMapper MAPPER = new ObjectMapper();
 
     private static final Logger log = LoggerFactory.getLogger(CodeAnalysisService.class);
-    private final Random random = new Random();
     private final ProjectInstanceArbitrator arbitrator;
     private final GitClient gitClient;
     private final ReferenceProperties referenceProperties;
-
-
-    public CodeAnalysisService(ProjectInstanceArbitrator arbitrator, GitClient gitClient, ReferenceProperties referenceProperties) {
+    private final CommitMetricsCache metricsCache;
+    private final AnalysisProperties analysisProperties;
+    private final MetricsService metricsService;
+    private final ShardedLizardRunner lizardRunner;
+    // Metric reference resolved per language, see projection()
+    private volatile Map<String, MetricProjection.Language> metricLanguages;
+    private final Map<EvaluationKey, CompletableFuture<Map<String, ClassMetric>>> inFlightEvaluations = new ConcurrentHashMap<>();
+
+    public CodeAnalysisService(ProjectInstanceArbitrator arbitrator, GitClient gitClient, ReferenceProperties referenceProperties,
+                               CommitMetricsCache metricsCache, AnalysisProperties analysisProperties, MetricsService metricsService,
+                               ShardedLizardRunner lizardRunner) {
         this.arbitrator = arbitrator;
         this.gitClient = gitClient;
         this.referenceProperties = referenceProperties;
+        this.metricsCache = metricsCache;
+        this.analysisProperties = analysisProperties;
+        this.metricsService = metricsService;
+        this.lizardRunner = lizardRunner;
     }
 
     /**
      * Returns metrics for a specific commit.
+     * Commits that were already evaluated are served from {@link CommitMetricsCache}
+     * without acquiring an instance. Otherwise, if an ancestor of the commit was evaluated,
+     * only the files changed since that ancestor are re-evaluated.
+     * Concurrent requests for the same commit share a single evaluation.
      */
     public CommitMetricsDTO getCommitMetrics(GitProjectEntity project, CommitDTO commit, List<String> metrics) throws Exception {
+        return getCommitMetrics(project, commit, metrics, null, null);
+    }
+
+    /**
+     * Returns metrics for a specific commit like {@link #getCommitMetrics(GitProjectEntity, CommitDTO, List)},
+     * with the tree pruned for zoomed out views.
+     *
+     * @param depth   number of levels below the root returned with their items, {@code null} for all;
+     *                deeper packages and classes only carry their summary
+     * @param minNloc packages and classes with total NLOC below this are collapsed into one "other" node
+     *                per package, {@code null} for no minimum
+     */
+    public CommitMetricsDTO getCommitMetrics(GitProjectEntity project, CommitDTO commit, List<String> metrics,
+                                             Integer depth, Integer minNloc) throws Exception {
+        validateTreeOptions(depth, minNloc);
+        MetricProjection projection = projection(project, metrics);
+        Map<String, ClassMetric> classMetrics = getClassMetrics(project, commit.sha(), metrics);
+
+        // Convert ClassMetric map to MetricsNodeDTO tree
+        MetricsNodeDTO root = convertClassMetricsToTree(classMetrics, projection, depth, minNloc);
+
+        return new CommitMetricsDTO(commit, root);
+    }
+
+    /**
+     * Returns metrics of a single package of a commit, or of a single class of that package, for drilling into
+     * a tree returned by {@link #getCommitMetrics(GitProjectEntity, CommitDTO, List, Integer, Integer)}.
+     * The commit is normally evaluated by then, so this is served from {@link CommitMetricsCache}.
+     *
+     * @param packagePath full name of the package, e.g. {@code org.app.util}, as in {@link PackageMetricsNodeDTO#path()}
+     * @param className   simple name of a class in the package, {@code null} for the whole package
+     * @param depth       see {@link #getCommitMetrics(GitProjectEntity, CommitDTO, List, Integer, Integer)}
+     * @param minNloc     see {@link #getCommitMetrics(GitProjectEntity, CommitDTO, List, Integer, Integer)}
+     * @throws IllegalArgumentException if the commit has no such package or class
+     */
+    public CommitMetricsDTO getSubtreeMetrics(GitProjectEntity project, CommitDTO commit, List<String> metrics,
+                                              String packagePath, String className,
+                                              Integer depth, Integer minNloc) throws Exception {
+        validateTreeOptions(depth, minNloc);
+        MetricsTreeConverter converter = new MetricsTreeConverter(projection(project, metrics), depth, minNloc);
+        Map<String, ClassMetric> classMetrics = getClassMetrics(project, commit.sha(), metrics);
+
+        if (className != null) {
+            ClassMetric classMetric = classMetrics.values().stream()
+                    .filter(c -> c.packageName().equals(packagePath) && c.simpleName().equals(className))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Class not found: " + packagePath + "." + className));
+            return new CommitMetricsDTO(commit, converter.convert(classMetric));
+        }
+
+        String prefix = packagePath + ".";
+        Map<String, ClassMetric> subtree = new HashMap<>();
+        for (ClassMetric classMetric : classMetrics.values()) {
+            String packageName = classMetric.packageName();
+            if (packageName.equals(packagePath) || packageName.startsWith(prefix)) {
+                subtree.put(classMetric.name(), classMetric);
+            }
+        }
+        if (subtree.isEmpty()) {
+            throw new IllegalArgumentException("Package not found: " + packagePath);
+        }
+        return new CommitMetricsDTO(commit, converter.convert(PackageTree.of(subtree)));
+    }
+
+    /**
+     * Returns metrics of all classes of a commit, evaluated the same way as by {@link #getCommitMetrics}.
+     *
+     * @param project   Git project entity
+     * @param commitSha full commit SHA
+     * @return class metrics keyed by class name
+     */
+    public Map<String, ClassMetric> getClassMetrics(GitProjectEntity project, String commitSha) throws Exception {
+        return getClassMetrics(project, commitSha, METRICS_LIST);
+    }
+
+    private Map<String, ClassMetric> getClassMetrics(GitProjectEntity project, String commitSha, List<String> metrics) throws Exception {
+        // Determine language - use project language or default to Java
+        MetricEvaluators.Language language = MetricEvaluators.Language.ofName(languageName(project));
+
+        Optional<Map<String, ClassMetric>> cached = metricsCache.get(project, commitSha, language);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        return evaluateCoalesced(project, commitSha, language, metrics);
+    }
+
+    private record EvaluationKey(Long projectId, String commitSha, MetricEvaluators.Language language) {
+    }
+
+    /**
+     * @return number of commit evaluations currently running, of all projects
+     */
+    public int runningEvaluations() {
+        return inFlightEvaluations.size();
+    }
+
+    /**
+     * Evaluates a commit, sharing the evaluation with concurrent callers asking for the same commit.
+     * Evaluation results do not depend on the requested metrics, so those are not part of the key.
+     */
+    private Map<String, ClassMetric> evaluateCoalesced(GitProjectEntity project, String commitSha,
+                                                       MetricEvaluators.Language language, List<String> metrics) throws Exception {
+        EvaluationKey key = new EvaluationKey(project.getId(), commitSha, language);
+        CompletableFuture<Map<String, ClassMetric>> evaluation = new CompletableFuture<>();
+        CompletableFuture<Map<String, ClassMetric>> inFlight = inFlightEvaluations.putIfAbsent(key, evaluation);
+
+        if (inFlight != null) {
+            metricsService.recordAnalysisCoalesced();
+            log.debug("Joining in-flight evaluation of commit {} of project {}", commitSha, project.getId());
+            try {
+                return inFlight.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            }
+        }
+
+        try {
+            // The evaluation that just finished may have stored its result after this caller missed the cache;
+            // the miss is already recorded, so the re-check does not count
+            Optional<Map<String, ClassMetric>> cached = metricsCache.load(project, commitSha, language);
+            Map<String, ClassMetric> classMetrics = cached.isPresent() ? cached.get() : evaluate(project, commitSha, language, metrics);
+            evaluation.complete(classMetrics);
+            return classMetrics;
+        } catch (Exception e) {
+            evaluation.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightEvaluations.remove(key, evaluation);
+        }
+    }
+
+    private Map<String, ClassMetric> evaluate(GitProjectEntity project, String commitSha,
+                                              MetricEvaluators.Language language, List<String> metrics) throws Exception {
+        MetricEvaluator evaluator = MetricEvaluators.forLanguage(language, lizardRunner);
+        MetricEvaluator.MetricEvaluationContext ctx = new MetricEvaluator.MetricEvaluationContext(project.getUrl(), commitSha);
+
+        Map<String, ClassMetric> classMetrics;
+        if (analysisProperties.getCheckoutFree().isEnabled()) {
+            try {
+                classMetrics = evaluateWithoutCheckout(project, language, evaluator, metrics, ctx);
+            } catch (GitOperationException e) {
+                log.warn("Cannot read commit {} from the object database, falling back to checkout: {}", commitSha, e.getMessage());
+                classMetrics = evaluateInInstance(project, language, evaluator, metrics, ctx);
+            }
+        } else {
+            classMetrics = evaluateInInstance(project, language, evaluator, metrics, ctx);
+        }
+        metricsCache.put(project, commitSha, language, classMetrics);
+        return classMetrics;
+    }
+
+    /**
+     * Files of the analyzed commit on disk.
+     *
+     * @param dir     directory containing the files at their repository-relative paths
+     * @param blobIds blob ids of the files keyed by repository-relative path if they were written from the object database,
+     *                see {@link MetricEvaluator.MetricEvaluationContext#blobIds()}
+     */
+    private record ProvidedFiles(File dir, Map<String, String> blobIds) {
+    }
+
+    /**
+     * Provides files of the analyzed commit on disk.
+     */
+    @FunctionalInterface
+    private interface CommitFiles {
+        /**
+         * @param paths repository-relative paths of files to provide, {@code null} for all source files
+         */
+        ProvidedFiles provide(Set<String> paths) throws IOException, GitOperationException;
+    }
+
+    /**
+     * Evaluates a commit from files written straight from the object database of the main repository
+     * into a scratch directory, without acquiring an instance or checking anything out.
+     *
+     * @throws GitOperationException if the commit cannot be read from the object database
+     */
+    private Map<String, ClassMetric> evaluateWithoutCheckout(GitProjectEntity project, MetricEvaluators.Language language,
+                                                             MetricEvaluator evaluator, List<String> metrics,
+                                                             MetricEvaluator.MetricEvaluationContext ctx)
+            throws IOException, MetricEvaluationException, GitOperationException {
+        File mainRepo = new File(project.getLocalPath());
+        Path workspace = createWorkspace(ctx.commitSha());
+        try {
+            log.info("Analyzing commit {} of project {} without checkout", ctx.commitSha(), project.getId());
+            // Files whose Lizard results are cached are listed but not written
+            return evaluateCommit(project, language, evaluator, metrics, ctx, paths -> new ProvidedFiles(workspace.toFile(),
+                    gitClient.materializeTree(mainRepo, ctx.commitSha(),
+                            path -> (paths == null || paths.contains(path)) && evaluator.sourceFilter().test(Path.of(path)),
+                            evaluator.blobFilter(), workspace)));
+        } finally {
+            FileSystemUtils.deleteRecursively(workspace);
+        }
+    }
+
+    private Map<String, ClassMetric> evaluateInInstance(GitProjectEntity project, MetricEvaluators.Language language,
+                                                        MetricEvaluator evaluator, List<String> metrics,
+                                                        MetricEvaluator.MetricEvaluationContext ctx) throws Exception {
         ProjectInstanceEntity instance = arbitrator.acquireInstance(project.getId());
         try {
             File projectDir = new File(instance.getLocalPath());
-            gitClient.checkout(projectDir, commit.sha());
-            log.info("Analyzing commit {} of project {} using instance {}", commit.sha(), project.getId(), instance.getId());
-            
-            // Determine language - use project language or default to Java
-            String languageName = project.getLanguageCode() != null ? project.getLanguageCode() : "Java";
-            MetricEvaluators.Language language = MetricEvaluators.Language.ofName(languageName);
-            MetricEvaluator evaluator = MetricEvaluators.forLanguage(language);
-
-            MetricEvaluator.MetricEvaluationContext ctx = new MetricEvaluator.MetricEvaluationContext(project.getUrl(), commit.sha());
-            Map<String, ClassMetric> classMetrics = evaluator.evaluateMetrics(projectDir, e -> true, metrics, ctx);
-            
-            // Convert ClassMetric map to MetricsNodeDTO tree
-            MetricsNodeDTO root = convertClassMetricsToTree(project, classMetrics, metrics);
-            
-            return new CommitMetricsDTO(commit, root);
+            gitClient.checkout(projectDir, ctx.commitSha());
+            log.info("Analyzing commit {} of project {} using instance {}", ctx.commitSha(), project.getId(), instance.getId());
+            return evaluateCommit(project, language, evaluator, metrics, ctx, paths -> new ProvidedFiles(projectDir, null));
         } finally {
             arbitrator.releaseInstance(instance.getId());
         }
     }
 
-    private record Package(String name, Map<String, Package> packages, List<ClassMetricsNodeDTO> classes) {
-        PackageMetricsNodeDTO toNode() {
-            var packageNodes = packages.values().stream().map(Package::toNode).toList();
-            if (classes.isEmpty() && packageNodes.size() == 1) {
-                var inner = packageNodes.getFirst();
-                if (name.equals("<root>")) return inner;
-                return new PackageMetricsNodeDTO(name + "." + inner.name(), inner.items());
+    private Map<String, ClassMetric> evaluateCommit(GitProjectEntity project, MetricEvaluators.Language language,
+                                                    MetricEvaluator evaluator, List<String> metrics,
+                                                    MetricEvaluator.MetricEvaluationContext ctx, CommitFiles files)
+            throws IOException, MetricEvaluationException, GitOperationException {
+        Optional<Map<String, ClassMetric>> incremental = evaluateIncrementally(project, language, evaluator, files, metrics, ctx);
+        if (incremental.isPresent()) {
+            return incremental.get();
+        }
+
+        ProvidedFiles provided = files.provide(null);
+        Map<String, ClassMetric> classMetrics = evaluator.evaluateMetrics(provided.dir(), e -> true, metrics,
+                ctx.withBlobIds(provided.blobIds()));
+        relativizeFiles(classMetrics, provided.dir());
+        return classMetrics;
+    }
+
+    private Path createWorkspace(String commitSha) throws IOException {
+        Path root = Files.createDirectories(Path.of(analysisProperties.getCheckoutFree().getScratchPath()));
+        return Files.createTempDirectory(root, commitSha + "-");
+    }
+
+    /**
+     * Evaluates a commit as a delta over the nearest already evaluated ancestor:
+     * files changed since the ancestor are evaluated,
+     * everything else is taken from the ancestor's stored result.
+     *
+     * @return merged metrics, or empty if no suitable ancestor is available
+     */
+    private Optional<Map<String, ClassMetric>> evaluateIncrementally(GitProjectEntity project, MetricEvaluators.Language language,
+                                                                     MetricEvaluator evaluator, CommitFiles files, List<String> metrics,
+                                                                     MetricEvaluator.MetricEvaluationContext ctx)
+            throws IOException, MetricEvaluationException, GitOperationException {
+        AnalysisProperties.Incremental settings = analysisProperties.getIncremental();
+        if (!settings.isEnabled()) {
+            return Optional.empty();
+        }
+
+        Set<String> evaluatedCommits = metricsCache.findEvaluatedCommits(project, language);
+        if (evaluatedCommits.isEmpty()) {
+            return Optional.empty();
+        }
+
+        File mainRepo = new File(project.getLocalPath());
+        String ancestorSha;
+        List<DiffEntry> changes;
+        try {
+            Optional<String> ancestor = gitClient.findNearestAncestor(mainRepo, ctx.commitSha(), evaluatedCommits, settings.getMaxDepth());
+            if (ancestor.isEmpty()) {
+                return Optional.empty();
+            }
+            ancestorSha = ancestor.get();
+            changes = gitClient.diffCommits(mainRepo, ancestorSha, ctx.commitSha());
+        } catch (GitOperationException e) {
+            log.warn("Incremental analysis of commit {} is not possible, falling back to full analysis: {}", ctx.commitSha(), e.getMessage());
+            return Optional.empty();
+        }
+
+        Optional<Map<String, ClassMetric>> base = metricsCache.load(project, ancestorSha, language);
+        if (base.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Set<String> removedFiles = new HashSet<>();
+        Set<String> changedFiles = new HashSet<>();
+        for (DiffEntry change : changes) {
+            if (change.getChangeType() != DiffEntry.ChangeType.ADD) {
+                removedFiles.add(change.getOldPath());
+            }
+            if (change.getChangeType() != DiffEntry.ChangeType.DELETE) {
+                removedFiles.add(change.getNewPath());
+                changedFiles.add(change.getNewPath());
             }
-            List<MetricsNodeDTO> nodes = new ArrayList<>();
-            nodes.addAll(packageNodes);
-            nodes.addAll(classes);
-            return new PackageMetricsNodeDTO(name, nodes);
         }
-    };
+        log.info("Incremental analysis of commit {} over ancestor {}: {} changed files", ctx.commitSha(), ancestorSha, changes.size());
+
+        Map<String, ClassMetric> delta = Map.of();
+        if (!changedFiles.isEmpty()) {
+            ProvidedFiles provided = files.provide(changedFiles);
+            File projectDir = provided.dir();
+            delta = evaluator.evaluateMetrics(projectDir, path -> changedFiles.contains(relativePath(projectDir, path)), metrics,
+                    ctx.withBlobIds(provided.blobIds()));
+            if (delta == null) {
+                return Optional.empty();
+            }
+            relativizeFiles(delta, projectDir);
+        }
+        metricsService.recordIncrementalAnalysis(changedFiles.size());
+
+        return Optional.of(mergeClassMetrics(base.get(), removedFiles, delta, ancestorSha, ctx.commitSha()));
+    }
+
     /**
-     * Converts a map of ClassMetric to a MetricsNodeDTO tree structure.
-     * Groups classes by package and creates a hierarchical structure.
+     * Merges the result of evaluating changed files into the result of an ancestor commit.
+     * Methods from removed files are dropped, classes left without methods disappear,
+     * and source links of unchanged files are moved to the new commit.
+     *
+     * @param base         evaluation result of the ancestor commit
+     * @param removedFiles repository-relative paths whose ancestor methods are no longer valid
+     * @param delta        evaluation result of the changed files
+     * @param baseSha      SHA of the ancestor commit
+     * @param commitSha    SHA of the evaluated commit
+     * @return merged evaluation result
      */
-    private MetricsNodeDTO convertClassMetricsToTree(GitProjectEntity project, Map<String, ClassMetric> classMetrics, List<String> requestedMetrics) {
-        if (classMetrics.isEmpty()) {
-            // Return empty package if no classes found
-            return new PackageMetricsNodeDTO("", List.of());
-        }
-
-        var metricsByCode = referenceProperties.getLanguages().stream()
-                .filter(lang -> lang.getLanguage().equals(project.getLanguageCode()))
-                .flatMap(lang -> lang.getMetrics().stream())
-                .collect(Collectors.toMap(ReferenceProperties.MetricConfig::getId, Function.identity()));
-        // Group classes by package
-        Map<String, List<ClassMetricsNodeDTO>> packageMap = new HashMap<>();
-        
+    static Map<String, ClassMetric> mergeClassMetrics(Map<String, ClassMetric> base, Set<String> removedFiles,
+                                                      Map<String, ClassMetric> delta, String baseSha, String commitSha) {
+        Map<String, ClassMetric> result = new HashMap<>();
+        String baseLink = "/blob/" + baseSha + "/";
+        String commitLink = "/blob/" + commitSha + "/";
+
+        for (ClassMetric classMetric : base.values()) {
+            ClassMetric merged = new ClassMetric(classMetric.name(), classMetric.packageName(), classMetric.simpleName());
+            for (MethodMetric method : classMetric.methods().values()) {
+                if (removedFiles.contains(method.file())) {
+                    continue;
+                }
+                String link = method.githubLink();
+                merged.methods().put(method.name(), link == null ? method : method.withGithubLink(link.replace(baseLink, commitLink)));
+            }
+            if (!merged.methods().isEmpty()) {
+                result.put(merged.name(), merged);
+            }
+        }
+
+        for (ClassMetric classMetric : delta.values()) {
+            result.computeIfAbsent(classMetric.name(), name -> new ClassMetric(name, classMetric.packageName(), classMetric.simpleName()))
+                    .methods().putAll(classMetric.methods());
+        }
+        return result;
+    }
+
+    /**
+     * Rewrites file paths reported by the evaluator to be relative to the repository root,
+     * so that results do not depend on the instance they were computed in.
+     */
+    private static void relativizeFiles(Map<String, ClassMetric> classMetrics, File projectDir) {
+        if (classMetrics == null) {
+            return;
+        }
+        String prefix = projectDir.getPath() + File.separator;
+        StringPool strings = new StringPool();
         for (ClassMetric classMetric : classMetrics.values()) {
-            String className = classMetric.name();
-            String packageName = classMetric.own().get("PACKAGE_NAME");
-            String simpleClassName = classMetric.own().get("SIMPLE_NAME");
-            
-            // Extract package name from fully qualified class name
-//            int lastDot = className.lastIndexOf('.');
-//            if (lastDot >= 0) {
-//                packageName = className.substring(0, lastDot);
-//                simpleClassName = className.substring(lastDot + 1);
-//            }
-            
-            // Convert methods to MethodMetricsNodeDTO
-            List<MethodMetricsNodeDTO> methodNodes = classMetric.methods().values().stream()
-                .map(method -> {
-                    List<MethodMetricDTO> methodMetrics = new ArrayList<>();
-                    for (String metricCode : requestedMetrics) {
-                        var metric = metricsByCode.get(metricCode);
-                        switch (metric.getType()) {
-                            case COLOR -> {
-                                if (metricCode.equals("PARAM_COLOR")) {
-                                    String valueStr = method.own().get("PARAM");
-                                    try {
-                                        String value = getColoredParam(valueStr);
-                                        methodMetrics.add(new MethodMetricDTO(metricCode, null, null,
-                                                new MethodMetricDTO.ColorValue(value, valueStr)));
-                                    } catch (NumberFormatException e) {
-                                        log.warn("Could not parse metric value {} for metric {}: {}", valueStr, metricCode, e.getMessage());
-                                    }
-                                }
-                            }
-                            case STRING -> {
-                                String value = method.own().get(metricCode);
-                                methodMetrics.add(new MethodMetricDTO(metricCode, value, null, null));
-                            }
-                            case NUMERIC -> {
-                                String valueStr = method.own().get(metricCode);
-                                try {
-                                    Integer value = Integer.parseInt(valueStr);
-                                    methodMetrics.add(new MethodMetricDTO(metricCode, null, value, null));
-                                } catch (NumberFormatException e) {
-                                    log.warn("Could not parse metric value {} for metric {}: {}", valueStr, metricCode, e.getMessage());
-                                }
-                            }
-                        }
-                    }
-                    return new MethodMetricsNodeDTO(method.name(), methodMetrics);
-                })
-                .toList();
-            
-            ClassMetricsNodeDTO classNode = new ClassMetricsNodeDTO(simpleClassName, methodNodes);
-            packageMap.computeIfAbsent(packageName, k -> new ArrayList<>()).add(classNode);
+            classMetric.methods().replaceAll((name, method) -> {
+                String file = method.file();
+                if (file != null && file.startsWith(prefix)) {
+                    file = strings.intern(relativePath(projectDir, Path.of(file)));
+                }
+                String location = method.location() != null ? method.location().replace(prefix, "") : null;
+                return method.withPaths(file, location);
+            });
         }
-        
-        // Create package nodes
-        Package root = new Package("<root>", new HashMap<>(), new ArrayList<>());
-        for (Map.Entry<String, List<ClassMetricsNodeDTO>> entry : packageMap.entrySet()) {
-            String packageName = entry.getKey();
-            String[] steps = packageName.split("\\.");
-            Package currentPackage = root;
-            for (String step : steps) {
-                currentPackage = currentPackage.packages.computeIfAbsent(step, k -> new Package(k, new HashMap<>(), new ArrayList<>()));
-            }
-            List<ClassMetricsNodeDTO> classes = entry.getValue();
-            currentPackage.classes.addAll(classes);
+    }
+
+    private static String relativePath(File projectDir, Path path) {
+        return projectDir.toPath().relativize(path).toString().replace(File.separatorChar, '/');
+    }
+
+    private static void validateTreeOptions(Integer depth, Integer minNloc) {
+        if (depth != null && depth < 0) {
+            throw new IllegalArgumentException("Depth must not be negative: " + depth);
+        }
+        if (minNloc != null && minNloc < 0) {
+            throw new IllegalArgumentException("Minimum NLOC must not be negative: " + minNloc);
         }
+    }
 
-        return root.toNode();
+    /**
+     * Converts a map of ClassMetric to a MetricsNodeDTO tree structure.
+     * Groups classes by package and creates a hierarchical structure, pruned as described in {@link MetricsTreeConverter}.
+     */
+    private static MetricsNodeDTO convertClassMetricsToTree(Map<String, ClassMetric> classMetrics, MetricProjection projection,
+                                                            Integer depth, Integer minNloc) {
+        return new MetricsTreeConverter(projection, depth, minNloc).convert(PackageTree.of(classMetrics));
     }
 
-    private static String getColoredParam(String valueStr) {
-        int valueInt = Integer.parseInt(valueStr);
-        return switch (valueInt) {
-            case 0 -> "0x34e8eb";
-            case 1 -> "0x64eb34";
-            case 2 -> "0xdeeb34";
-            case 3 -> "0xeb9b34";
-            default -> "0xeb3d34";
-        };
+    /**
+     * Checks that all requested metrics are defined for the language of the project, so that invalid requests
+     * are rejected before anything is evaluated.
+     *
+     * @throws IllegalArgumentException if a metric is unknown
+     */
+    public void validateMetrics(GitProjectEntity project, List<String> metrics) {
+        projection(project, metrics);
+    }
+
+    private MetricProjection projection(GitProjectEntity project, List<String> metrics) {
+        Map<String, MetricProjection.Language> languages = metricLanguages;
+        if (languages == null) {
+            // Resolved on first use; concurrent first requests resolve the same reference
+            languages = MetricProjection.resolve(referenceProperties.getLanguages());
+            metricLanguages = languages;
+        }
+
+        MetricProjection.Language language = languages.get(MetricProjection.key(languageName(project)));
+        if (language == null) {
+            throw new IllegalArgumentException("No metrics are defined for language " + languageName(project));
+        }
+        return language.project(metrics);
+    }
+
+    private static String languageName(GitProjectEntity project) {
+        return project.getLanguageCode() != null ? project.getLanguageCode() : "Java";
+    }
+
+    /**
+     * Writes metrics of a commit as JSON of the same shape as {@link CommitMetricsDTO}, without building the DTO tree.
+     *
+     * @param project      Git project entity
+     * @param commit       commit the metrics belong to
+     * @param classMetrics metrics of the commit, see {@link #getClassMetrics(GitProjectEntity, String)}
+     * @param metrics      requested metrics
+     * @param out          stream to write to; it is not closed
+     */
+    public void writeCommitMetrics(GitProjectEntity project, CommitDTO commit, Map<String, ClassMetric> classMetrics,
+                                   List<String> metrics, OutputStream out) throws IOException {
+        MetricProjection projection = projection(project, metrics);
+        try (JsonGenerator generator = MAPPER.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            new CommitMetricsJsonWriter(generator, projection).write(commit, classMetrics);
+        }
+    }
+
+    /**
+     * Returns metrics of a commit in columnar form, see {@link ColumnarCommitMetricsDTO}.
+     */
+    public ColumnarCommitMetricsDTO getCommitMetricsColumnar(GitProjectEntity project, CommitDTO commit,
+                                                             List<String> metrics) throws Exception {
+        MetricProjection projection = projection(project, metrics);
+        Map<String, ClassMetric> classMetrics = getClassMetrics(project, commit.sha(), metrics);
+        return new ColumnarMetricsEncoder(projection).encode(commit, classMetrics);
     }
 
     /**
@@ -270,7 +617,7 @@ public class CodeAnalysisService {
 
         for (String languageName : languages) {
             MetricEvaluators.Language language = MetricEvaluators.Language.ofName(languageName);
-            MetricEvaluator evaluator = MetricEvaluators.forLanguage(language);
+            MetricEvaluator evaluator = MetricEvaluators.forLanguage(language, lizardRunner);
             metrics.put(languageName, evaluator.evaluateMetrics(projectDir, e -> true, METRICS_LIST));
         }
 
@@ -293,7 +640,7 @@ public class CodeAnalysisService {
         String languageName = "Java";
         try {
             MetricEvaluators.Language language = MetricEvaluators.Language.ofName(languageName);
-            MetricEvaluator evaluator = MetricEvaluators.forLanguage(language);
+            MetricEvaluator evaluator = MetricEvaluators.forLanguage(language, lizardRunner);
             Map<String, ClassMetric> metrics = evaluator.evaluateMetrics(projectDir, e -> true, METRICS_LIST);
             
             int totalFiles = metrics.size();
@@ -321,6 +668,21 @@ public class CodeAnalysisService {
      * @return map of analysis metrics
      */
     public Map<String, Object> analyzeCommit(Long projectId, GitProjectEntity entity, String commitSha) throws Exception {
+        if (analysisProperties.getCheckoutFree().isEnabled() && entity != null) {
+            MetricEvaluator evaluator = MetricEvaluators.forLanguage(MetricEvaluators.Language.JAVA, lizardRunner);
+            Path workspace = createWorkspace(commitSha);
+            try {
+                gitClient.materializeTree(new File(entity.getLocalPath()), commitSha,
+                        path -> evaluator.sourceFilter().test(Path.of(path)), blobId -> true, workspace);
+                log.info("Analyzing commit {} of project {} without checkout", commitSha, projectId);
+                return analyzeCommit(workspace.toFile(), entity, commitSha);
+            } catch (GitOperationException e) {
+                log.warn("Cannot read commit {} from the object database, falling back to checkout: {}", commitSha, e.getMessage());
+            } finally {
+                FileSystemUtils.deleteRecursively(workspace);
+            }
+        }
+
         ProjectInstanceEntity instance = arbitrator.acquireInstance(projectId);
         try {
             File projectDir = new File(instance.getLocalPath());
@@ -346,7 +708,7 @@ public class CodeAnalysisService {
         String languageName = "Java";
         try {
             MetricEvaluators.Language language = MetricEvaluators.Language.ofName(languageName);
-            MetricEvaluator evaluator = MetricEvaluators.forLanguage(language);
+            MetricEvaluator evaluator = MetricEvaluators.forLanguage(language, lizardRunner);
             Map<String, ClassMetric> metrics = evaluator.evaluateMetrics(projectDir, e -> true, METRICS_LIST);
             
             int totalFiles = metrics.size();
@@ -367,36 +729,159 @@ public class CodeAnalysisService {
     }
 
     /**
-     * Computes a diff analysis between two commits using a free instance.
+     * Computes per-method metric changes between two commits.
+     * <p>
+     * Only source files changed between the commits are evaluated, at both revisions, from files written
+     * straight from the object database, so the cost follows the size of the change rather than of the repository.
+     * A revision already present in {@link CommitMetricsCache} is not evaluated at all.
      *
-     * @param projectId project ID
+     * @param project      Git project entity
      * @param oldCommitSha SHA of the older commit
      * @param newCommitSha SHA of the newer commit
-     * @return map of delta metrics
+     * @return added, removed and modified methods
      */
-    public Map<String, Object> analyzeDiff(Long projectId, String oldCommitSha, String newCommitSha) throws Exception {
-        ProjectInstanceEntity instance = arbitrator.acquireInstance(projectId);
+    public CommitDiffDTO analyzeDiff(GitProjectEntity project, String oldCommitSha, String newCommitSha) throws Exception {
+        MetricEvaluators.Language language = MetricEvaluators.Language.ofName(languageName(project));
+        MetricEvaluator evaluator = MetricEvaluators.forLanguage(language, lizardRunner);
+
+        Set<String> oldFiles = new HashSet<>();
+        Set<String> newFiles = new HashSet<>();
+        for (DiffEntry change : gitClient.diffCommits(new File(project.getLocalPath()), oldCommitSha, newCommitSha)) {
+            if (change.getChangeType() != DiffEntry.ChangeType.ADD && evaluator.sourceFilter().test(Path.of(change.getOldPath()))) {
+                oldFiles.add(change.getOldPath());
+            }
+            if (change.getChangeType() != DiffEntry.ChangeType.DELETE && evaluator.sourceFilter().test(Path.of(change.getNewPath()))) {
+                newFiles.add(change.getNewPath());
+            }
+        }
+        Set<String> changedFiles = new HashSet<>(oldFiles);
+        changedFiles.addAll(newFiles);
+        log.info("Analyzing diff {}..{} of project {}: {} changed source files", oldCommitSha, newCommitSha, project.getId(), changedFiles.size());
+
+        Map<String, ClassMetric> before = evaluateFiles(project, language, evaluator, oldCommitSha, oldFiles);
+        Map<String, ClassMetric> after = evaluateFiles(project, language, evaluator, newCommitSha, newFiles);
+        return diffMethods(oldCommitSha, newCommitSha, changedFiles.size(), before, after);
+    }
+
+    /**
+     * Evaluates the given files of a commit, taking them from the stored result of the commit if there is one.
+     *
+     * @param files repository-relative paths of files to evaluate
+     * @return metrics of classes declared in the given files
+     */
+    private Map<String, ClassMetric> evaluateFiles(GitProjectEntity project, MetricEvaluators.Language language,
+                                                   MetricEvaluator evaluator, String commitSha, Set<String> files)
+            throws IOException, MetricEvaluationException, GitOperationException {
+        if (files.isEmpty()) {
+            return Map.of();
+        }
+
+        Optional<Map<String, ClassMetric>> stored = metricsCache.load(project, commitSha, language);
+        if (stored.isPresent()) {
+            return stored.get().values().stream()
+                    .map(classMetric -> {
+                        ClassMetric filtered = new ClassMetric(classMetric.name(), classMetric.packageName(), classMetric.simpleName());
+                        classMetric.methods().forEach((name, method) -> {
+                            if (files.contains(method.file())) {
+                                filtered.methods().put(name, method);
+                            }
+                        });
+                        return filtered;
+                    })
+                    .filter(classMetric -> !classMetric.methods().isEmpty())
+                    .collect(Collectors.toMap(ClassMetric::name, Function.identity()));
+        }
+
+        Path workspace = createWorkspace(commitSha);
         try {
-            File projectDir = new File(instance.getLocalPath());
-            // Diff usually doesn't need checkout, but stub might.
-            log.info("Analyzing diff {}..{} of project {} using instance {}", oldCommitSha, newCommitSha, projectId, instance.getId());
-            return analyzeDiff(projectDir, oldCommitSha, newCommitSha);
+            Map<String, String> blobIds = gitClient.materializeTree(new File(project.getLocalPath()), commitSha, files::contains,
+                    evaluator.blobFilter(), workspace);
+            MetricEvaluator.MetricEvaluationContext ctx = new MetricEvaluator.MetricEvaluationContext(project.getUrl(), commitSha, blobIds);
+            File dir = workspace.toFile();
+            Map<String, ClassMetric> classMetrics = evaluator.evaluateMetrics(dir, path -> files.contains(relativePath(dir, path)), METRICS_LIST, ctx);
+            if (classMetrics == null) {
+                return Map.of();
+            }
+            relativizeFiles(classMetrics, dir);
+            return classMetrics;
         } finally {
-            arbitrator.releaseInstance(instance.getId());
+            FileSystemUtils.deleteRecursively(workspace);
         }
     }
 
+    private record MethodKey(String className, String methodName) {
+    }
+
     /**
-     * Computes a diff analysis between two commits.
-     *
-     * @param projectDir   the root directory of the project
-     * @param oldCommitSha SHA of the older commit
-     * @param newCommitSha SHA of the newer commit
-     * @return map of delta metrics
+     * Compares methods of two evaluation results. Methods are matched by class and method name;
+     * methods whose numeric metrics are all equal are left out.
      */
-    public Map<String, Object> analyzeDiff(File projectDir, String oldCommitSha, String newCommitSha) {
-        log.info("Stub diff analysis between '{}' and '{}' in project at path: {}", oldCommitSha, newCommitSha, projectDir.getAbsolutePath());
+    static CommitDiffDTO diffMethods(String oldCommitSha, String newCommitSha, int changedFiles,
+                                     Map<String, ClassMetric> before, Map<String, ClassMetric> after) {
+        Map<MethodKey, MethodMetric> oldMethods = flattenMethods(before);
+        Map<MethodKey, MethodMetric> newMethods = flattenMethods(after);
+        Set<MethodKey> keys = new TreeSet<>(Comparator.comparing(MethodKey::className).thenComparing(MethodKey::methodName));
+        keys.addAll(oldMethods.keySet());
+        keys.addAll(newMethods.keySet());
+
+        int[] totals = new int[NumericMetric.count()];
+        int added = 0;
+        int removed = 0;
+        int modified = 0;
+        List<MethodDiffDTO> methods = new ArrayList<>();
+        for (MethodKey key : keys) {
+            MethodMetric oldMethod = oldMethods.get(key);
+            MethodMetric newMethod = newMethods.get(key);
+            if (oldMethod != null && newMethod != null && Arrays.equals(oldMethod.values(), newMethod.values())) {
+                continue;
+            }
+
+            MethodDiffDTO.Status status;
+            if (oldMethod == null) {
+                status = MethodDiffDTO.Status.ADDED;
+                added++;
+            } else if (newMethod == null) {
+                status = MethodDiffDTO.Status.REMOVED;
+                removed++;
+            } else {
+                status = MethodDiffDTO.Status.MODIFIED;
+                modified++;
+            }
 
-        return Map.of("old_commit", oldCommitSha, "new_commit", newCommitSha, "total_files_delta", random.nextInt(5) - 2, "java_lines_delta", random.nextInt(50) - 25, "methods_count_delta", random.nextInt(3) - 1, "classes_count_delta", random.nextInt(2) - 1);
+            Map<String, Integer> delta = new LinkedHashMap<>();
+            for (NumericMetric metric : NumericMetric.values()) {
+                int difference = (newMethod != null ? newMethod.value(metric) : 0) - (oldMethod != null ? oldMethod.value(metric) : 0);
+                delta.put(metric.name(), difference);
+                totals[metric.ordinal()] += difference;
+            }
+            methods.add(new MethodDiffDTO(key.className(), key.methodName(),
+                    (newMethod != null ? newMethod : oldMethod).file(), status,
+                    numericValues(oldMethod), numericValues(newMethod), delta));
+        }
+
+        Map<String, Integer> totalDelta = new LinkedHashMap<>();
+        for (NumericMetric metric : NumericMetric.values()) {
+            totalDelta.put(metric.name(), totals[metric.ordinal()]);
+        }
+        return new CommitDiffDTO(oldCommitSha, newCommitSha, changedFiles, added, removed, modified, totalDelta, methods);
+    }
+
+    private static Map<MethodKey, MethodMetric> flattenMethods(Map<String, ClassMetric> classMetrics) {
+        Map<MethodKey, MethodMetric> methods = new HashMap<>();
+        for (ClassMetric classMetric : classMetrics.values()) {
+            classMetric.methods().forEach((name, method) -> methods.put(new MethodKey(classMetric.name(), name), method));
+        }
+        return methods;
+    }
+
+    private static Map<String, Integer> numericValues(MethodMetric method) {
+        if (method == null) {
+            return null;
+        }
+        Map<String, Integer> values = new LinkedHashMap<>();
+        for (NumericMetric metric : NumericMetric.values()) {
+            values.put(metric.name(), method.value(metric));
+        }
+        return values;
     }
 }
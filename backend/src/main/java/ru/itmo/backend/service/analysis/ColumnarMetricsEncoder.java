@@ -0,0 +1,132 @@
+package ru.itmo.backend.service.analysis;
+
+import ru.itmo.backend.dto.response.analysis.ColumnarCommitMetricsDTO;
+import ru.itmo.backend.dto.response.commit.CommitDTO;
+import ru.itmo.backend.evaluator.model.ClassMetric;
+import ru.itmo.backend.evaluator.model.MethodMetric;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Flattens commit metrics into {@link ColumnarCommitMetricsDTO}: nodes of the package tree in depth-first order
+ * with parent indices, a shared string dictionary, and one value array per requested metric.
+ * Keys are not repeated per method, which makes the payload far smaller and faster to parse than the JSON tree.
+ */
+class ColumnarMetricsEncoder {
+
+    /**
+     * Growable array of ints.
+     */
+    private static class IntColumn {
+        private int[] values = new int[64];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    private final MetricProjection projection;
+
+    private final List<String> strings = new ArrayList<>();
+    private final Map<String, Integer> stringIndices = new HashMap<>();
+    private final IntColumn nodeTypes = new IntColumn();
+    private final IntColumn parents = new IntColumn();
+    private final IntColumn names = new IntColumn();
+    private final IntColumn methods = new IntColumn();
+    private final List<MethodMetric> methodMetrics = new ArrayList<>();
+
+    ColumnarMetricsEncoder(MetricProjection projection) {
+        this.projection = projection;
+    }
+
+    ColumnarCommitMetricsDTO encode(CommitDTO commit, Map<String, ClassMetric> classMetrics) {
+        addPackage(PackageTree.of(classMetrics), -1);
+
+        List<ColumnarCommitMetricsDTO.Column> columns = new ArrayList<>(projection.columns().size());
+        for (MetricProjection.Column column : projection.columns()) {
+            columns.add(switch (column.type()) {
+                case NUMERIC -> numericColumn(column);
+                case STRING -> stringColumn(column);
+                case COLOR -> colorColumn(column);
+            });
+        }
+
+        return new ColumnarCommitMetricsDTO(commit, strings, nodeTypes.toArray(), parents.toArray(), names.toArray(),
+                methods.toArray(), columns);
+    }
+
+    private void addPackage(PackageTree pkg, int parent) {
+        int node = addNode(ColumnarCommitMetricsDTO.PACKAGE, parent, pkg.name());
+        for (PackageTree child : pkg.packages()) {
+            addPackage(child, node);
+        }
+        for (PackageTree.ClassNode classNode : pkg.classes()) {
+            int classIndex = addNode(ColumnarCommitMetricsDTO.CLASS, node, classNode.metric().simpleName());
+            for (MethodMetric method : classNode.metric().methods().values()) {
+                methods.add(addNode(ColumnarCommitMetricsDTO.METHOD, classIndex, method.name()));
+                methodMetrics.add(method);
+            }
+        }
+    }
+
+    private int addNode(int type, int parent, String name) {
+        int node = nodeTypes.size();
+        nodeTypes.add(type);
+        parents.add(parent);
+        names.add(intern(name));
+        return node;
+    }
+
+    private int intern(String value) {
+        if (value == null) {
+            return -1;
+        }
+        return stringIndices.computeIfAbsent(value, v -> {
+            strings.add(v);
+            return strings.size() - 1;
+        });
+    }
+
+    private ColumnarCommitMetricsDTO.Column numericColumn(MetricProjection.Column column) {
+        int[] values = new int[methodMetrics.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = methodMetrics.get(i).value(column.number());
+        }
+        return new ColumnarCommitMetricsDTO.Column(column.code(), column.type().name(), values, null);
+    }
+
+    private ColumnarCommitMetricsDTO.Column stringColumn(MetricProjection.Column column) {
+        int[] values = new int[methodMetrics.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = intern(column.text().apply(methodMetrics.get(i)));
+        }
+        return new ColumnarCommitMetricsDTO.Column(column.code(), column.type().name(), values, null);
+    }
+
+    private ColumnarCommitMetricsDTO.Column colorColumn(MetricProjection.Column column) {
+        int[] values = new int[methodMetrics.size()];
+        int[] labels = new int[methodMetrics.size()];
+        for (int i = 0; i < values.length; i++) {
+            int param = methodMetrics.get(i).value(column.number());
+            values[i] = intern(MetricProjection.colorOf(param));
+            labels[i] = intern(String.valueOf(param));
+        }
+        return new ColumnarCommitMetricsDTO.Column(column.code(), column.type().name(), values, labels);
+    }
+}
@@ -0,0 +1,215 @@
+package ru.itmo.backend.service.analysis;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.itmo.backend.config.metrics.MetricsService;
+import ru.itmo.backend.entity.CommitMetricsEntity;
+import ru.itmo.backend.entity.GitProjectEntity;
+import ru.itmo.backend.evaluator.MetricEvaluators;
+import ru.itmo.backend.evaluator.model.ClassMetric;
+import ru.itmo.backend.repo.CommitMetricsRepository;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Persistent store of evaluated commit metrics.
+ * <p>
+ * Entries are keyed by (project, commit SHA, language) and live as long as the project itself:
+ * they are evicted together with the project in {@code GitProjectService.cleanupExpiredProjectOnce}.
+ * <p>
+ * Recently used results are also kept decoded in memory, so that repeated requests for the same commit
+ * (e.g. drilling into its packages) do not parse the stored payload again. The number of such entries is bounded,
+ * least recently used ones are dropped first. Returned results are shared, so they are unmodifiable.
+ */
+@Service
+public class CommitMetricsCache {
+
+    private static final Logger log = LoggerFactory.getLogger(CommitMetricsCache.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final TypeReference<Map<String, ClassMetric>> CLASS_METRICS_TYPE = new TypeReference<>() {
+    };
+
+    private record Key(Long projectId, String commitSha, MetricEvaluators.Language language) {
+    }
+
+    private final CommitMetricsRepository repository;
+    private final MetricsService metricsService;
+    private final int maxDecodedEntries;
+    private final LinkedHashMap<Key, Map<String, ClassMetric>> decoded;
+
+    public CommitMetricsCache(CommitMetricsRepository repository, MetricsService metricsService,
+                              @Value("${analysis.metrics-cache.decoded-entries:16}") int maxDecodedEntries) {
+        this.repository = repository;
+        this.metricsService = metricsService;
+        this.maxDecodedEntries = Math.max(0, maxDecodedEntries);
+        this.decoded = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Map<String, ClassMetric>> eldest) {
+                return size() > CommitMetricsCache.this.maxDecodedEntries;
+            }
+        };
+    }
+
+    /**
+     * Looks up stored metrics of a commit. Records a cache hit or miss.
+     *
+     * @param project   Git project entity
+     * @param commitSha full commit SHA
+     * @param language  evaluator language
+     * @return unmodifiable evaluation result if the commit was already evaluated
+     */
+    public Optional<Map<String, ClassMetric>> get(GitProjectEntity project, String commitSha, MetricEvaluators.Language language) {
+        Optional<Map<String, ClassMetric>> result = load(project, commitSha, language);
+
+        if (result.isPresent()) {
+            metricsService.recordMetricsCacheHit();
+            log.debug("Metrics cache hit for commit {} of project {}", commitSha, project.getId());
+        } else {
+            metricsService.recordMetricsCacheMiss();
+            log.debug("Metrics cache miss for commit {} of project {}", commitSha, project.getId());
+        }
+        return result;
+    }
+
+    /**
+     * Loads stored metrics of a commit without affecting hit/miss statistics.
+     * Used when stored results serve as a base for another evaluation.
+     *
+     * @param project   Git project entity
+     * @param commitSha full commit SHA
+     * @param language  evaluator language
+     * @return unmodifiable evaluation result if the commit was already evaluated
+     */
+    public Optional<Map<String, ClassMetric>> load(GitProjectEntity project, String commitSha, MetricEvaluators.Language language) {
+        Key key = new Key(project.getId(), commitSha, language);
+        synchronized (decoded) {
+            Map<String, ClassMetric> cached = decoded.get(key);
+            if (cached != null) {
+                return Optional.of(cached);
+            }
+        }
+
+        // Decoded outside the lock; concurrent loads of the same commit produce equal results
+        Optional<Map<String, ClassMetric>> result = repository
+                .findByProjectIdAndCommitShaAndLanguageCode(project.getId(), commitSha, language.name())
+                .flatMap(this::decode)
+                .map(CommitMetricsCache::unmodifiable);
+        result.ifPresent(classMetrics -> remember(key, classMetrics));
+        return result;
+    }
+
+    /**
+     * Lists commits of a project that were already evaluated.
+     *
+     * @param project  Git project entity
+     * @param language evaluator language
+     * @return SHAs of evaluated commits
+     */
+    public Set<String> findEvaluatedCommits(GitProjectEntity project, MetricEvaluators.Language language) {
+        return new HashSet<>(repository.findCommitShas(project.getId(), language.name()));
+    }
+
+    /**
+     * Stores metrics of a commit. Concurrent stores of the same commit are tolerated:
+     * the first one wins, the rest are ignored.
+     * <p>
+     * The result is copied, so the caller may keep modifying its own map. When called within a transaction,
+     * the copy is kept decoded only once the transaction commits.
+     *
+     * @param project      Git project entity
+     * @param commitSha    full commit SHA
+     * @param language     evaluator language
+     * @param classMetrics evaluation result
+     */
+    public void put(GitProjectEntity project, String commitSha, MetricEvaluators.Language language, Map<String, ClassMetric> classMetrics) {
+        if (classMetrics == null) {
+            return;
+        }
+
+        CommitMetricsEntity entity = new CommitMetricsEntity();
+        entity.setProject(project);
+        entity.setCommitSha(commitSha);
+        entity.setLanguageCode(language.name());
+        entity.setCreatedAt(LocalDateTime.now());
+
+        try {
+            entity.setPayload(MAPPER.writeValueAsString(classMetrics));
+            repository.save(entity);
+            rememberAfterCommit(new Key(project.getId(), commitSha, language), unmodifiable(classMetrics));
+            log.info("Stored metrics of commit {} of project {} ({} classes)", commitSha, project.getId(), classMetrics.size());
+        } catch (JsonProcessingException e) {
+            log.warn("Failed to serialize metrics of commit {}: {}", commitSha, e.getMessage());
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Metrics of commit {} of project {} were already stored concurrently", commitSha, project.getId());
+        }
+    }
+
+    /**
+     * Removes all stored metrics of a project.
+     *
+     * @param projectId project ID
+     */
+    @Transactional
+    public void evictProject(Long projectId) {
+        synchronized (decoded) {
+            decoded.keySet().removeIf(key -> key.projectId().equals(projectId));
+        }
+        int removed = repository.deleteByProjectId(projectId);
+        log.info("Evicted {} cached commit metrics of project {}", removed, projectId);
+    }
+
+    private void remember(Key key, Map<String, ClassMetric> classMetrics) {
+        synchronized (decoded) {
+            decoded.put(key, classMetrics);
+        }
+    }
+
+    private void rememberAfterCommit(Key key, Map<String, ClassMetric> classMetrics) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    remember(key, classMetrics);
+                }
+            });
+        } else {
+            remember(key, classMetrics);
+        }
+    }
+
+    private static Map<String, ClassMetric> unmodifiable(Map<String, ClassMetric> classMetrics) {
+        Map<String, ClassMetric> result = new LinkedHashMap<>(classMetrics.size() * 4 / 3 + 1);
+        for (Map.Entry<String, ClassMetric> entry : classMetrics.entrySet()) {
+            ClassMetric classMetric = entry.getValue();
+            result.put(entry.getKey(), new ClassMetric(classMetric.name(), classMetric.packageName(), classMetric.simpleName(),
+                    Collections.unmodifiableMap(new LinkedHashMap<>(classMetric.methods()))));
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    private Optional<Map<String, ClassMetric>> decode(CommitMetricsEntity entity) {
+        try {
+            return Optional.of(MAPPER.readValue(entity.getPayload(), CLASS_METRICS_TYPE));
+        } catch (JsonProcessingException e) {
+            // Entries written by an incompatible model version are treated as absent and re-evaluated
+            log.warn("Discarding unreadable cached metrics of commit {}: {}", entity.getCommitSha(), e.getMessage());
+            repository.delete(entity);
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package ru.itmo.backend.service.analysis;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import ru.itmo.backend.dto.response.analysis.CommitMetricsDTO;
+import ru.itmo.backend.dto.response.commit.CommitDTO;
+import ru.itmo.backend.evaluator.model.ClassMetric;
+import ru.itmo.backend.evaluator.model.MethodMetric;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Writes commit metrics straight from the evaluator model as JSON of the same shape as {@link CommitMetricsDTO}.
+ * <p>
+ * Classes are only grouped by package ({@link PackageTree}); class and method nodes are written as they are visited,
+ * so no per-method objects outlive the method being written.
+ */
+class CommitMetricsJsonWriter {
+
+    private final JsonGenerator generator;
+    private final MetricProjection projection;
+
+    CommitMetricsJsonWriter(JsonGenerator generator, MetricProjection projection) {
+        this.generator = generator;
+        this.projection = projection;
+    }
+
+    void write(CommitDTO commit, Map<String, ClassMetric> classMetrics) throws IOException {
+        generator.writeStartObject();
+        generator.writeObjectField("commit", commit);
+        generator.writeFieldName("root");
+        writePackage(PackageTree.of(classMetrics));
+        generator.writeEndObject();
+        generator.flush();
+    }
+
+    private void writePackage(PackageTree pkg) throws IOException {
+        writePackageStart(pkg.name(), pkg.path());
+        for (PackageTree child : pkg.packages()) {
+            writePackage(child);
+        }
+        for (PackageTree.ClassNode classNode : pkg.classes()) {
+            writeClass(classNode);
+        }
+        generator.writeEndArray();
+        generator.writeObjectField("summary", pkg.summary().toDTO());
+        generator.writeEndObject();
+    }
+
+    private void writePackageStart(String name, String path) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("type", "package");
+        generator.writeStringField("name", name);
+        generator.writeStringField("path", path);
+        generator.writeArrayFieldStart("items");
+    }
+
+    private void writeClass(PackageTree.ClassNode classNode) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("type", "class");
+        generator.writeStringField("name", classNode.metric().simpleName());
+        generator.writeArrayFieldStart("items");
+        for (MethodMetric method : classNode.metric().methods().values()) {
+            generator.writeStartObject();
+            generator.writeStringField("name", method.name());
+            generator.writeArrayFieldStart("metrics");
+            for (MetricProjection.Column column : projection.columns()) {
+                generator.writeObject(column.toDto(method));
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+        generator.writeObjectField("summary", classNode.summary().toDTO());
+        generator.writeEndObject();
+    }
+}
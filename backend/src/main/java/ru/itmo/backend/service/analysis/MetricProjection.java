@@ -0,0 +1,147 @@
+package ru.itmo.backend.service.analysis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.itmo.backend.dto.response.analysis.MethodMetricDTO;
+import ru.itmo.backend.dto.response.reference.MetricDTO;
+import ru.itmo.backend.evaluator.model.MethodMetric;
+import ru.itmo.backend.evaluator.model.NumericMetric;
+import ru.itmo.backend.service.reference.ReferenceProperties;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Requested metrics of a language, resolved to typed extractors of {@link MethodMetric} values.
+ * <p>
+ * Metric codes are resolved against the reference once per language ({@link #resolve}) and validated once
+ * per request ({@link Language#project}), so converting methods is a loop over columns without lookups by code.
+ */
+final class MetricProjection {
+
+    private static final Logger log = LoggerFactory.getLogger(MetricProjection.class);
+
+    /**
+     * A requested metric.
+     *
+     * @param number extractor of NUMERIC metrics and of the parameter count shown by PARAM_COLOR
+     * @param text   extractor of STRING metrics
+     */
+    record Column(String code, MetricDTO.MetricType type, NumericMetric number, Function<MethodMetric, String> text) {
+
+        MethodMetricDTO toDto(MethodMetric method) {
+            return switch (type) {
+                case NUMERIC -> new MethodMetricDTO(code, null, method.value(number), null);
+                case STRING -> new MethodMetricDTO(code, text.apply(method), null, null);
+                case COLOR -> {
+                    int param = method.value(number);
+                    yield new MethodMetricDTO(code, null, null, new MethodMetricDTO.ColorValue(colorOf(param), String.valueOf(param)));
+                }
+            };
+        }
+    }
+
+    /**
+     * Metrics of one language from the reference.
+     */
+    static final class Language {
+        private final Map<String, Column> columns = new HashMap<>();
+        // Codes from the reference, including the ones that are not evaluated for methods
+        private final Set<String> codes = new HashSet<>();
+
+        /**
+         * @param requested requested metric codes
+         * @return projection of the requested metrics in request order; metrics that are not evaluated
+         * for methods are skipped
+         * @throws IllegalArgumentException if a code is not in the reference of the language
+         */
+        MetricProjection project(List<String> requested) {
+            List<Column> projected = new ArrayList<>(requested.size());
+            for (String code : requested) {
+                if (!codes.contains(code)) {
+                    throw new IllegalArgumentException("Unknown metric: " + code);
+                }
+                Column column = columns.get(code);
+                if (column != null) {
+                    projected.add(column);
+                }
+            }
+            return new MetricProjection(projected);
+        }
+    }
+
+    private final List<Column> columns;
+
+    private MetricProjection(List<Column> columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * Resolves metric codes of all languages of the reference.
+     *
+     * @return metrics keyed by lower case language name
+     */
+    static Map<String, Language> resolve(List<ReferenceProperties.LanguageConfig> languageConfigs) {
+        Map<String, Language> languages = new HashMap<>();
+        if (languageConfigs == null) {
+            return languages;
+        }
+        for (ReferenceProperties.LanguageConfig languageConfig : languageConfigs) {
+            Language language = languages.computeIfAbsent(key(languageConfig.getLanguage()), k -> new Language());
+            for (ReferenceProperties.MetricConfig metric : languageConfig.getMetrics()) {
+                language.codes.add(metric.getId());
+                Column column = resolve(metric);
+                if (column != null) {
+                    language.columns.put(metric.getId(), column);
+                } else {
+                    log.warn("Metric {} of {} is not evaluated for methods", metric.getId(), languageConfig.getLanguage());
+                }
+            }
+        }
+        return languages;
+    }
+
+    private static Column resolve(ReferenceProperties.MetricConfig metric) {
+        String code = metric.getId();
+        return switch (metric.getType()) {
+            case NUMERIC -> {
+                NumericMetric numeric = NumericMetric.ofCode(code);
+                yield numeric != null ? new Column(code, metric.getType(), numeric, null) : null;
+            }
+            case STRING -> new Column(code, metric.getType(), null, MethodMetric.accessor(code));
+            case COLOR -> code.equals("PARAM_COLOR") ? new Column(code, metric.getType(), NumericMetric.PARAM, null) : null;
+        };
+    }
+
+    static String key(String languageName) {
+        return languageName.toLowerCase(Locale.ROOT);
+    }
+
+    static String colorOf(int param) {
+        return switch (param) {
+            case 0 -> "0x34e8eb";
+            case 1 -> "0x64eb34";
+            case 2 -> "0xdeeb34";
+            case 3 -> "0xeb9b34";
+            default -> "0xeb3d34";
+        };
+    }
+
+    List<Column> columns() {
+        return columns;
+    }
+
+    List<MethodMetricDTO> toMethodMetrics(MethodMetric method) {
+        List<MethodMetricDTO> metrics = new ArrayList<>(columns.size());
+        for (Column column : columns) {
+            metrics.add(column.toDto(method));
+        }
+        return metrics;
+    }
+}
@@ -0,0 +1,54 @@
+package ru.itmo.backend.service.analysis;
+
+import ru.itmo.backend.dto.response.analysis.MetricsSummaryDTO;
+import ru.itmo.backend.evaluator.model.ClassMetric;
+import ru.itmo.backend.evaluator.model.MethodMetric;
+import ru.itmo.backend.evaluator.model.NumericMetric;
+
+/**
+ * Accumulates NLOC and CCN of methods for {@link MetricsSummaryDTO}.
+ */
+class MetricsSummary {
+
+    private int methodCount;
+    private long totalNloc;
+    private int maxNloc;
+    private long totalCcn;
+    private int maxCcn;
+
+    static MetricsSummary of(ClassMetric classMetric) {
+        MetricsSummary summary = new MetricsSummary();
+        for (MethodMetric method : classMetric.methods().values()) {
+            summary.add(method);
+        }
+        return summary;
+    }
+
+    void add(MethodMetric method) {
+        int nloc = method.value(NumericMetric.NLOC);
+        int ccn = method.value(NumericMetric.CCN);
+        methodCount++;
+        totalNloc += nloc;
+        maxNloc = Math.max(maxNloc, nloc);
+        totalCcn += ccn;
+        maxCcn = Math.max(maxCcn, ccn);
+    }
+
+    void add(MetricsSummary other) {
+        methodCount += other.methodCount;
+        totalNloc += other.totalNloc;
+        maxNloc = Math.max(maxNloc, other.maxNloc);
+        totalCcn += other.totalCcn;
+        maxCcn = Math.max(maxCcn, other.maxCcn);
+    }
+
+    long totalNloc() {
+        return totalNloc;
+    }
+
+    MetricsSummaryDTO toDTO() {
+        double meanNloc = methodCount == 0 ? 0 : (double) totalNloc / methodCount;
+        double meanCcn = methodCount == 0 ? 0 : (double) totalCcn / methodCount;
+        return new MetricsSummaryDTO(methodCount, totalNloc, maxNloc, meanNloc, totalCcn, maxCcn, meanCcn);
+    }
+}
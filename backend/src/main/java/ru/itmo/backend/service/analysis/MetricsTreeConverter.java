@@ -0,0 +1,86 @@
+package ru.itmo.backend.service.analysis;
+
+import ru.itmo.backend.dto.response.analysis.*;
+import ru.itmo.backend.evaluator.model.ClassMetric;
+import ru.itmo.backend.evaluator.model.MethodMetric;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts a {@link PackageTree} to the {@link MetricsNodeDTO} tree, optionally pruned for zoomed out views:
+ * <ul>
+ *     <li>packages and classes deeper than {@code depth} are returned without items, only with their summary;</li>
+ *     <li>packages and classes with total NLOC below {@code minNloc} are collapsed into one "other" node per package.</li>
+ * </ul>
+ */
+class MetricsTreeConverter {
+
+    private final MetricProjection projection;
+    private final Integer depth;
+    private final Integer minNloc;
+
+    /**
+     * @param depth   number of levels below the root returned with their items, {@code null} for all
+     * @param minNloc minimum total NLOC of packages and classes returned separately, {@code null} for no minimum
+     */
+    MetricsTreeConverter(MetricProjection projection, Integer depth, Integer minNloc) {
+        this.projection = projection;
+        this.depth = depth;
+        this.minNloc = minNloc;
+    }
+
+    PackageMetricsNodeDTO convert(PackageTree root) {
+        return toNode(root, 0);
+    }
+
+    ClassMetricsNodeDTO convert(ClassMetric classMetric) {
+        return toNode(classMetric, MetricsSummary.of(classMetric), 0);
+    }
+
+    private PackageMetricsNodeDTO toNode(PackageTree pkg, int level) {
+        if (depth != null && level >= depth) {
+            return new PackageMetricsNodeDTO(pkg.name(), pkg.path(), null, pkg.summary().toDTO());
+        }
+
+        List<MetricsNodeDTO> items = new ArrayList<>();
+        MetricsSummary other = new MetricsSummary();
+        int otherCount = 0;
+        for (PackageTree child : pkg.packages()) {
+            if (isSmall(child.summary())) {
+                other.add(child.summary());
+                otherCount++;
+            } else {
+                items.add(toNode(child, level + 1));
+            }
+        }
+        for (PackageTree.ClassNode classNode : pkg.classes()) {
+            if (isSmall(classNode.summary())) {
+                other.add(classNode.summary());
+                otherCount++;
+            } else {
+                items.add(toNode(classNode.metric(), classNode.summary(), level + 1));
+            }
+        }
+        if (otherCount > 0) {
+            items.add(new OtherMetricsNodeDTO(OtherMetricsNodeDTO.NAME, otherCount, other.toDTO()));
+        }
+        return new PackageMetricsNodeDTO(pkg.name(), pkg.path(), items, pkg.summary().toDTO());
+    }
+
+    private ClassMetricsNodeDTO toNode(ClassMetric classMetric, MetricsSummary summary, int level) {
+        if (depth != null && level >= depth) {
+            return new ClassMetricsNodeDTO(classMetric.simpleName(), null, summary.toDTO());
+        }
+
+        List<MethodMetricsNodeDTO> methodNodes = new ArrayList<>(classMetric.methods().size());
+        for (MethodMetric method : classMetric.methods().values()) {
+            methodNodes.add(new MethodMetricsNodeDTO(method.name(), projection.toMethodMetrics(method)));
+        }
+        return new ClassMetricsNodeDTO(classMetric.simpleName(), methodNodes, summary.toDTO());
+    }
+
+    private boolean isSmall(MetricsSummary summary) {
+        return minNloc != null && summary.totalNloc() < minNloc;
+    }
+}
@@ -0,0 +1,87 @@
+package ru.itmo.backend.service.analysis;
+
+import ru.itmo.backend.evaluator.model.ClassMetric;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Package hierarchy of evaluated classes, as presented to the frontend.
+ * <p>
+ * Chains of packages without classes are collapsed into a single node named {@code a.b.c}, so a name is relative
+ * to the parent node; {@code path} is the full package name of a node.
+ * Nodes only reference the evaluator model, so the tree is proportional to the number of packages and classes.
+ * Each node carries the summary of all methods below it.
+ */
+record PackageTree(String name, String path, List<PackageTree> packages, List<ClassNode> classes, MetricsSummary summary) {
+
+    private static final String ROOT = "<root>";
+
+    /**
+     * A class of a package with the summary of its methods, computed once while the tree is built.
+     */
+    record ClassNode(ClassMetric metric, MetricsSummary summary) {
+    }
+
+    private record Builder(Map<String, Builder> packages, List<ClassMetric> classes) {
+        Builder() {
+            this(new HashMap<>(), new ArrayList<>());
+        }
+
+        PackageTree build(String name, String path) {
+            Builder current = this;
+            while (current.classes.isEmpty() && current.packages.size() == 1) {
+                Map.Entry<String, Builder> inner = current.packages.entrySet().iterator().next();
+                name = name.equals(ROOT) ? inner.getKey() : name + "." + inner.getKey();
+                path = child(path, inner.getKey());
+                current = inner.getValue();
+            }
+
+            MetricsSummary summary = new MetricsSummary();
+            List<PackageTree> children = new ArrayList<>(current.packages.size());
+            for (Map.Entry<String, Builder> child : current.packages.entrySet()) {
+                PackageTree childTree = child.getValue().build(child.getKey(), child(path, child.getKey()));
+                summary.add(childTree.summary());
+                children.add(childTree);
+            }
+            List<ClassNode> classes = new ArrayList<>(current.classes.size());
+            for (ClassMetric classMetric : current.classes) {
+                ClassNode classNode = new ClassNode(classMetric, MetricsSummary.of(classMetric));
+                summary.add(classNode.summary());
+                classes.add(classNode);
+            }
+            return new PackageTree(name, path, children, classes, summary);
+        }
+
+        private static String child(String path, String step) {
+            return path.isEmpty() ? step : path + "." + step;
+        }
+    }
+
+    /**
+     * Groups classes by package. An empty result yields an empty package named {@code ""}.
+     */
+    static PackageTree of(Map<String, ClassMetric> classMetrics) {
+        if (classMetrics.isEmpty()) {
+            return new PackageTree("", "", List.of(), List.of(), new MetricsSummary());
+        }
+
+        // Classes are grouped by package name first, so that each package name is split only once
+        Map<String, List<ClassMetric>> packageMap = new HashMap<>();
+        for (ClassMetric classMetric : classMetrics.values()) {
+            packageMap.computeIfAbsent(classMetric.packageName(), k -> new ArrayList<>()).add(classMetric);
+        }
+
+        Builder root = new Builder();
+        for (Map.Entry<String, List<ClassMetric>> entry : packageMap.entrySet()) {
+            Builder current = root;
+            for (String step : entry.getKey().split("\\.")) {
+                current = current.packages.computeIfAbsent(step, k -> new Builder());
+            }
+            current.classes.addAll(entry.getValue());
+        }
+        return root.build(ROOT, "");
+    }
+}
@@ -0,0 +1,165 @@
+package ru.itmo.backend.service.analysis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.itmo.backend.config.metrics.MetricsService;
+import ru.itmo.backend.dto.response.commit.BranchDTO;
+import ru.itmo.backend.dto.response.commit.CommitDTO;
+import ru.itmo.backend.entity.GitProjectEntity;
+import ru.itmo.backend.evaluator.MetricEvaluationException;
+import ru.itmo.backend.evaluator.MetricEvaluators;
+import ru.itmo.backend.service.GitCommitService;
+import ru.itmo.backend.service.ProjectInstanceArbitrator;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Analyzes branch heads of freshly cloned or updated projects in the background,
+ * so that the first request for the latest commit is served from {@link CommitMetricsCache}.
+ * <p>
+ * Pre-analysis is throttled: a single low-priority thread handles all projects, one commit at a time,
+ * and a commit is only analyzed while no other evaluation is running, since evaluations of all projects share
+ * the Lizard pool, and while its project has a spare instance and no waiting requests.
+ * Otherwise it is retried later. An interactive request for a commit being pre-analyzed joins that evaluation.
+ */
+@Service
+public class PreAnalysisService implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(PreAnalysisService.class);
+
+    private record Target(Long projectId, String commitSha) {
+    }
+
+    private final CodeAnalysisService codeAnalysisService;
+    private final GitCommitService gitCommitService;
+    private final CommitMetricsCache metricsCache;
+    private final ProjectInstanceArbitrator arbitrator;
+    private final MetricsService metricsService;
+    private final AnalysisProperties.PreAnalysis properties;
+    private final ScheduledThreadPoolExecutor executor;
+
+    private final Set<Target> pending = ConcurrentHashMap.newKeySet();
+
+    public PreAnalysisService(CodeAnalysisService codeAnalysisService, GitCommitService gitCommitService,
+                              CommitMetricsCache metricsCache, ProjectInstanceArbitrator arbitrator,
+                              MetricsService metricsService, AnalysisProperties analysisProperties) {
+        this.codeAnalysisService = codeAnalysisService;
+        this.gitCommitService = gitCommitService;
+        this.metricsCache = metricsCache;
+        this.arbitrator = arbitrator;
+        this.metricsService = metricsService;
+        this.properties = analysisProperties.getPreAnalysis();
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("pre-analysis-");
+        threadFactory.setThreadPriority(Thread.MIN_PRIORITY);
+        threadFactory.setDaemon(true);
+        this.executor = new ScheduledThreadPoolExecutor(1, threadFactory);
+        this.executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * Schedules background analysis of the branch heads of a project.
+     * When called within a transaction, nothing starts before the transaction commits.
+     *
+     * @param project project that was cloned or updated
+     */
+    public void schedule(GitProjectEntity project) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+
+        Runnable plan = () -> executor.execute(() -> planBranchHeads(project));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    plan.run();
+                }
+            });
+        } else {
+            plan.run();
+        }
+    }
+
+    private void planBranchHeads(GitProjectEntity project) {
+        List<BranchDTO> heads;
+        Set<String> evaluated;
+        try {
+            MetricEvaluators.Language language = languageOf(project);
+            evaluated = metricsCache.findEvaluatedCommits(project, language);
+            heads = new ArrayList<>(gitCommitService.listBranches(project));
+            String defaultBranch = gitCommitService.getDefaultBranch(project).orElse(null);
+            // Users open the default branch first
+            heads.sort(Comparator.comparing(head -> !head.branchName().equals(defaultBranch)));
+        } catch (Exception e) {
+            log.warn("Unable to plan pre-analysis of project {}: {}", project.getId(), e.getMessage());
+            return;
+        }
+
+        Set<String> seen = new HashSet<>();
+        int scheduled = 0;
+        for (BranchDTO head : heads) {
+            if (scheduled >= properties.getMaxBranches()) {
+                break;
+            }
+            String sha = head.latestCommit();
+            if (sha == null || !seen.add(sha) || evaluated.contains(sha)) {
+                continue;
+            }
+            if (pending.add(new Target(project.getId(), sha))) {
+                executor.execute(() -> analyze(project, head, 0));
+                scheduled++;
+            }
+        }
+        log.info("Scheduled pre-analysis of {} branch heads of project {}", scheduled, project.getId());
+    }
+
+    private void analyze(GitProjectEntity project, BranchDTO head, int attempt) {
+        Target target = new Target(project.getId(), head.latestCommit());
+        // Checkout-free evaluations take no instance, so the load is measured by running evaluations
+        if (codeAnalysisService.runningEvaluations() > 0 || !arbitrator.hasSpareInstance(project.getId())) {
+            if (attempt < properties.getMaxRetries()) {
+                executor.schedule(() -> analyze(project, head, attempt + 1), properties.getRetryDelayMs(), TimeUnit.MILLISECONDS);
+            } else {
+                pending.remove(target);
+                log.info("Giving up pre-analysis of commit {} of project {}: analyses keep running", target.commitSha(), project.getId());
+            }
+            return;
+        }
+
+        try {
+            Optional<CommitDTO> commit = gitCommitService.getCommit(project, head.branchName(), head.latestCommit());
+            if (commit.isPresent()) {
+                codeAnalysisService.getCommitMetrics(project, commit.get(), CodeAnalysisService.METRICS_LIST);
+                metricsService.recordPreAnalysis();
+                log.info("Pre-analyzed commit {} ({}) of project {}", target.commitSha(), head.branchName(), project.getId());
+            }
+        } catch (Exception e) {
+            log.warn("Pre-analysis of commit {} of project {} failed: {}", target.commitSha(), project.getId(), e.getMessage());
+        } finally {
+            pending.remove(target);
+        }
+    }
+
+    private static MetricEvaluators.Language languageOf(GitProjectEntity project) throws MetricEvaluationException {
+        return MetricEvaluators.Language.ofName(project.getLanguageCode() != null ? project.getLanguageCode() : "Java");
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(60, TimeUnit.SECONDS);
+    }
+}
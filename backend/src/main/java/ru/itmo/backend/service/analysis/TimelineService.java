@@ -0,0 +1,129 @@
+package ru.itmo.backend.service.analysis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import ru.itmo.backend.dto.response.analysis.TimelinePointDTO;
+import ru.itmo.backend.dto.response.commit.CommitDTO;
+import ru.itmo.backend.entity.GitProjectEntity;
+import ru.itmo.backend.evaluator.model.ClassMetric;
+import ru.itmo.backend.evaluator.model.MethodMetric;
+import ru.itmo.backend.evaluator.model.NumericMetric;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Computes aggregate metrics over the history of a branch.
+ * <p>
+ * The sampled commits are split into contiguous segments evaluated in parallel. Within a segment commits
+ * are evaluated oldest first, so that each one is evaluated incrementally over the previous one
+ * by {@link CodeAnalysisService}. Points are reported as soon as they are computed, not in history order.
+ */
+@Service
+public class TimelineService implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(TimelineService.class);
+
+    private final CodeAnalysisService codeAnalysisService;
+    private final int parallelism;
+    private final int maxPoints;
+    private final ExecutorService executor;
+
+    public TimelineService(CodeAnalysisService codeAnalysisService, AnalysisProperties analysisProperties) {
+        this.codeAnalysisService = codeAnalysisService;
+        this.parallelism = Math.max(1, analysisProperties.getTimeline().getParallelism());
+        this.maxPoints = Math.max(1, analysisProperties.getTimeline().getMaxPoints());
+        this.executor = Executors.newFixedThreadPool(parallelism, new CustomizableThreadFactory("timeline-"));
+    }
+
+    public int getMaxPoints() {
+        return maxPoints;
+    }
+
+    /**
+     * Computes timeline points of the given commits in the background.
+     * Cancelling the returned future stops the computation after the points being evaluated.
+     *
+     * @param project  Git project entity
+     * @param commits  commits to compute, oldest first
+     * @param listener receiver of computed points, called concurrently from several threads
+     * @return future completed when all points are computed, or exceptionally on the first failure
+     */
+    public CompletableFuture<Void> computeTimeline(GitProjectEntity project, List<CommitDTO> commits,
+                                                  Consumer<TimelinePointDTO> listener) {
+        CompletableFuture<Void> timeline = new CompletableFuture<>();
+        List<List<CommitDTO>> segments = split(commits, parallelism);
+        log.info("Computing timeline of {} commits of project {} in {} segments", commits.size(), project.getId(), segments.size());
+
+        CompletableFuture.allOf(segments.stream()
+                        .map(segment -> CompletableFuture.runAsync(() -> computeSegment(project, segment, listener, timeline), executor))
+                        .toArray(CompletableFuture[]::new))
+                .whenComplete((ignored, error) -> timeline.complete(null));
+        return timeline;
+    }
+
+    private void computeSegment(GitProjectEntity project, List<CommitDTO> segment,
+                                Consumer<TimelinePointDTO> listener, CompletableFuture<Void> timeline) {
+        for (CommitDTO commit : segment) {
+            if (timeline.isDone()) {
+                return;
+            }
+            try {
+                listener.accept(aggregate(commit, codeAnalysisService.getClassMetrics(project, commit.sha())));
+            } catch (Exception e) {
+                log.warn("Timeline of project {} failed at commit {}: {}", project.getId(), commit.sha(), e.getMessage());
+                timeline.completeExceptionally(e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Splits commits into at most {@code count} contiguous segments of nearly equal size.
+     */
+    static List<List<CommitDTO>> split(List<CommitDTO> commits, int count) {
+        int segments = Math.min(count, commits.size());
+        List<List<CommitDTO>> result = new ArrayList<>(segments);
+        for (int i = 0; i < segments; i++) {
+            result.add(commits.subList(commits.size() * i / segments, commits.size() * (i + 1) / segments));
+        }
+        return result;
+    }
+
+    static TimelinePointDTO aggregate(CommitDTO commit, Map<String, ClassMetric> classMetrics) {
+        long totalNloc = 0;
+        long totalCcn = 0;
+        int maxCcn = 0;
+        int methodCount = 0;
+        Map<String, Integer> methodsPerPackage = new TreeMap<>();
+
+        for (ClassMetric classMetric : classMetrics.values()) {
+            for (MethodMetric method : classMetric.methods().values()) {
+                int ccn = method.value(NumericMetric.CCN);
+                totalNloc += method.value(NumericMetric.NLOC);
+                totalCcn += ccn;
+                maxCcn = Math.max(maxCcn, ccn);
+                methodCount++;
+            }
+            methodsPerPackage.merge(classMetric.packageName(), classMetric.methods().size(), Integer::sum);
+        }
+
+        double meanCcn = methodCount == 0 ? 0 : (double) totalCcn / methodCount;
+        return new TimelinePointDTO(commit, totalNloc, meanCcn, maxCcn, methodCount, methodsPerPackage);
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(60, TimeUnit.SECONDS);
+    }
+}
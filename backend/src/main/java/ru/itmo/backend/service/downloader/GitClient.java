@@ -1,15 +1,60 @@
 package ru.itmo.backend.service.downloader;
 
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.lib.ProgressMonitor;
 import ru.itmo.backend.exception.GitOperationException;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
 
 public interface GitClient {
     void cloneProject(String url, File dir) throws GitAPIException;
+
+    /**
+     * Clones a remote repository, reporting transfer and checkout progress.
+     *
+     * @param url     repository URL
+     * @param dir     directory of the new clone
+     * @param monitor receiver of progress
+     * @throws GitAPIException if cloning fails
+     */
+    void cloneProject(String url, File dir, ProgressMonitor monitor) throws GitAPIException;
     void cloneLocal(File source, File destination) throws GitAPIException;
+
+    /**
+     * Creates a clone of a local repository that reads objects from the source's object database
+     * (Git alternates) instead of copying them. Only refs, the index and the working tree are written.
+     * The source must outlive the clone and must not drop objects reachable from its refs.
+     *
+     * @param source      repository to clone
+     * @param destination directory of the new clone
+     * @throws GitOperationException if the clone cannot be created
+     */
+    void cloneShared(File source, File destination) throws GitOperationException;
     void pullProject(File dir) throws GitOperationException;
+
+    /**
+     * Fetches from the origin of a repository without touching its working tree.
+     *
+     * @param dir repository directory
+     * @throws GitOperationException if the fetch fails
+     */
+    void fetchProject(File dir) throws GitOperationException;
+
+    /**
+     * Checks out a commit. If the commit is not known yet, fetches from origin first.
+     *
+     * @param dir       repository directory
+     * @param commitSha SHA of the commit
+     * @throws GitOperationException if the commit cannot be checked out
+     */
     void checkout(File dir, String commitSha) throws GitOperationException;
     
     /**
@@ -20,4 +65,43 @@ public interface GitClient {
      * @throws IOException if I/O error occurs
      */
     boolean isValidGitRepository(File dir) throws IOException;
+
+    /**
+     * Finds the closest ancestor of a commit that belongs to the given set of commits.
+     *
+     * @param dir        repository directory
+     * @param commitSha  SHA of the commit to start from (not considered itself)
+     * @param candidates SHAs of acceptable ancestors
+     * @param maxDepth   maximum number of ancestors to inspect
+     * @return SHA of the closest matching ancestor, if any
+     * @throws GitOperationException if history cannot be read
+     */
+    Optional<String> findNearestAncestor(File dir, String commitSha, Set<String> candidates, int maxDepth) throws GitOperationException;
+
+    /**
+     * Computes the file-level difference between the trees of two commits.
+     * Renames are reported as a deletion plus an addition.
+     *
+     * @param dir          repository directory
+     * @param oldCommitSha SHA of the base commit
+     * @param newCommitSha SHA of the target commit
+     * @return changed files
+     * @throws GitOperationException if commits cannot be read
+     */
+    List<DiffEntry> diffCommits(File dir, String oldCommitSha, String newCommitSha) throws GitOperationException;
+
+    /**
+     * Lists files of a commit and writes them directly from the object database, without checking the commit out.
+     * Files are placed at their repository-relative paths under {@code targetDir}; symlinks and submodules are skipped.
+     *
+     * @param dir        repository directory
+     * @param commitSha  SHA of the commit
+     * @param pathFilter accepts repository-relative paths of files to list
+     * @param blobFilter accepts blob ids of listed files to write; files it rejects are listed but not written
+     * @param targetDir  directory to write files into
+     * @return blob ids of listed files keyed by repository-relative path
+     * @throws GitOperationException if the commit cannot be read or files cannot be written
+     */
+    Map<String, String> materializeTree(File dir, String commitSha, Predicate<String> pathFilter, Predicate<String> blobFilter,
+                                        Path targetDir) throws GitOperationException;
 }
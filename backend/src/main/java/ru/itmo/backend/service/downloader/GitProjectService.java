@@ -13,6 +13,12 @@ import ru.itmo.backend.entity.GitProjectEntity;
 import ru.itmo.backend.entity.ProjectInstanceEntity;
 import ru.itmo.backend.exception.*;
 import ru.itmo.backend.repo.ProjectInstanceRepository;
+import ru.itmo.backend.service.CommitHistoryIndex;
+import ru.itmo.backend.service.ProjectInstanceArbitrator;
+import ru.itmo.backend.service.analysis.CommitMetricsCache;
+import ru.itmo.backend.service.analysis.AnalysisJobService;
+import ru.itmo.backend.service.analysis.PreAnalysisService;
+import ru.itmo.backend.service.jobs.ProgressReporter;
 import io.micrometer.core.instrument.Timer;
 
 import org.springframework.transaction.annotation.Transactional;
@@ -48,11 +54,19 @@ public class GitProjectService {
     private final ProjectInstanceRepository projectInstanceRepository;
     private final MetricsService metricsService;
     private final ru.itmo.backend.service.analysis.CodeAnalysisService codeAnalysisService;
+    private final CommitMetricsCache commitMetricsCache;
+    private final ProjectInstanceArbitrator arbitrator;
+    private final CommitHistoryIndex commitHistoryIndex;
+    private final AnalysisJobService analysisJobService;
     private final Path storagePath;
     private final long expireHours;
-    private final int instanceCount;
+    private final ProjectInstanceProvisioner provisioner;
+    private final PreAnalysisService preAnalysisService;
     private final ConcurrentMap<String, ReentrantLock> repoLocks = new ConcurrentHashMap<>();
 
+    private static final String STAGE_UPDATING = "Updating repository";
+    private static final String STAGE_INSTANCES = "Creating instances";
+
     private static final Pattern GITHUB_REGEX =
             Pattern.compile("github\\.com[:/](.+?)/(.+?)(\\.git)?$");
 
@@ -62,6 +76,11 @@ public class GitProjectService {
      * @param gitClient            abstraction of Git operations
      * @param fileManager          abstraction of filesystem operations
      * @param projectAccessService service that manages project metadata and TTL
+     * @param commitMetricsCache   persistent store of evaluated commit metrics
+     * @param commitHistoryIndex   cached branch histories, dropped when the project changes
+     * @param analysisJobService   runner of analysis jobs, whose executor is dropped with the project
+     * @param provisioner          creator of project instances
+     * @param preAnalysisService   background analysis of branch heads after clone and update
      * @param storagePath          base directory where projects are stored
      * @param expireHours          TTL of cached projects in hours
      */
@@ -72,10 +91,15 @@ public class GitProjectService {
             ProjectInstanceRepository projectInstanceRepository,
             MetricsService metricsService,
             ru.itmo.backend.service.analysis.CodeAnalysisService codeAnalysisService,
+            CommitMetricsCache commitMetricsCache,
+            ProjectInstanceArbitrator arbitrator,
+            CommitHistoryIndex commitHistoryIndex,
+            AnalysisJobService analysisJobService,
+            ProjectInstanceProvisioner provisioner,
+            PreAnalysisService preAnalysisService,
             @Value("${repository.storage.path}") String storagePath,
             @Value("${repository.expire.hours}") long expireHours,
-            @Value("${repository.min-free-space-mb:1024}") long minFreeSpaceMb,
-            @Value("${repository.instances.count:6}") int instanceCount
+            @Value("${repository.min-free-space-mb:1024}") long minFreeSpaceMb
     ) {
         this.gitClient = gitClient;
         this.fileManager = fileManager;
@@ -83,9 +107,14 @@ public class GitProjectService {
         this.projectInstanceRepository = projectInstanceRepository;
         this.metricsService = metricsService;
         this.codeAnalysisService = codeAnalysisService;
+        this.commitMetricsCache = commitMetricsCache;
+        this.arbitrator = arbitrator;
+        this.commitHistoryIndex = commitHistoryIndex;
+        this.analysisJobService = analysisJobService;
+        this.provisioner = provisioner;
+        this.preAnalysisService = preAnalysisService;
         this.storagePath = Path.of(storagePath).toAbsolutePath().normalize();
         this.expireHours = expireHours;
-        this.instanceCount = instanceCount;
 
         try {
             Files.createDirectories(this.storagePath);
@@ -127,6 +156,20 @@ public class GitProjectService {
      */
     @Transactional
     public ProjectResponseDTO getOrCloneProject(String repoUrl) throws IOException, GitAPIException {
+        return getOrCloneProject(repoUrl, ProgressReporter.NONE);
+    }
+
+    /**
+     * Same as {@link #getOrCloneProject(String)}, reporting progress of the clone or update.
+     *
+     * @param repoUrl  Git project URL
+     * @param progress receiver of progress
+     * @return DTO containing project metadata and update status
+     * @throws IOException      if filesystem operations fail
+     * @throws GitAPIException  if Git operations fail
+     */
+    @Transactional
+    public ProjectResponseDTO getOrCloneProject(String repoUrl, ProgressReporter progress) throws IOException, GitAPIException {
         ReentrantLock lock = repoLocks.computeIfAbsent(repoUrl, key -> new ReentrantLock());
         lock.lock();
         try {
@@ -140,15 +183,20 @@ public class GitProjectService {
 
                 if (dir.exists()) {
                     log.info("Repository exists, attempting git pull: {}", entity.getLocalPath());
+                    progress.report(STAGE_UPDATING, 0, 0);
                     updateStatus = updateProject(entity);
                 } else {
                     log.warn("Repository directory missing, removing stale metadata: {}", entity.getId());
+                    commitMetricsCache.evictProject(entity.getId());
+                    arbitrator.evictProject(entity.getId());
+                    commitHistoryIndex.evictProject(entity.getId());
+                    analysisJobService.evictProject(entity.getId());
                     projectAccessService.delete(entity);
-                    entity = cloneNewRepository(repoUrl);
+                    entity = cloneNewRepository(repoUrl, progress);
                     updateStatus = UpdateStatus.CLONED;
                 }
             } else {
-                entity = cloneNewRepository(repoUrl);
+                entity = cloneNewRepository(repoUrl, progress);
                 updateStatus = UpdateStatus.CLONED;
             }
 
@@ -166,6 +214,10 @@ public class GitProjectService {
                 }
             }
 
+            if (updateStatus != UpdateStatus.NOT_UPDATED) {
+                preAnalysisService.schedule(entity);
+            }
+
             return new ProjectResponseDTO(
                     entity.getId(),
                     parsed.get("owner"),
@@ -192,22 +244,15 @@ public class GitProjectService {
 
         try {
             gitClient.pullProject(dir);
+            commitHistoryIndex.evictProject(entity.getId());
             log.info("Main repository updated via git pull: {}", entity.getLocalPath());
             
-            // Sync instances
-            List<ProjectInstanceEntity> instances = entity.getInstances();
-            log.info("Synchronizing {} instances for project {}...", instances.size(), entity.getId());
-            for (ProjectInstanceEntity instance : instances) {
-                File instanceDir = new File(instance.getLocalPath());
-                if (instanceDir.exists()) {
-                    gitClient.pullProject(instanceDir);
-                    log.info("Synced instance {} (path: {})", instance.getId(), instance.getLocalPath());
-                } else {
-                    log.warn("Instance directory missing, recreating: {}", instance.getLocalPath());
-                    gitClient.cloneLocal(dir, instanceDir);
-                }
-            }
-            
+            // Instances fetch from the main repository in the background; analyses fetch on demand if they get ahead
+            List<File> instanceDirs = entity.getInstances().stream()
+                    .map(instance -> new File(instance.getLocalPath()))
+                    .toList();
+            provisioner.syncInstances(dir, instanceDirs);
+
             success = true;
             return UpdateStatus.UPDATED;
         } catch (GitRepositoryNotFoundException e) {
@@ -244,12 +289,13 @@ public class GitProjectService {
      * Clones a new repository to disk and stores metadata in the database.
      * If database save fails, the cloned directory is cleaned up to prevent disk space leaks.
      *
-     * @param repoUrl repository URL
+     * @param repoUrl  repository URL
+     * @param progress receiver of clone progress
      * @return saved entity
      * @throws IOException     if filesystem operations fail
      * @throws GitAPIException if cloning fails
      */
-    private GitProjectEntity cloneNewRepository(String repoUrl) throws IOException, GitAPIException {
+    private GitProjectEntity cloneNewRepository(String repoUrl, ProgressReporter progress) throws IOException, GitAPIException {
         Path projectDir = storagePath.resolve(UUID.randomUUID().toString());
         Files.createDirectories(projectDir);
         boolean directoryCreated = true;
@@ -259,7 +305,7 @@ public class GitProjectService {
         log.info("Cloning repository: {}", repoUrl);
 
         try {
-            gitClient.cloneProject(repoUrl, projectDir.toFile());
+            gitClient.cloneProject(repoUrl, projectDir.toFile(), new ReportingProgressMonitor(progress));
             
             // Validate that cloned directory is a valid Git repository
             if (!gitClient.isValidGitRepository(projectDir.toFile())) {
@@ -282,24 +328,20 @@ public class GitProjectService {
         entity.setCreatedAt(now());
         entity.setExpiresAt(now().plusHours(expireHours));
 
-        // Create instances
-        log.info("Creating {} parallel instances for project {}", instanceCount, repoUrl);
-        for (int i = 0; i < instanceCount; i++) {
-            Path instancePath = storagePath.resolve(UUID.randomUUID().toString());
+        // Further instances are provisioned on demand by the arbitrator
+        int initialInstances = provisioner.getInitialInstances();
+        log.info("Creating {} initial instances for project {}", initialInstances, repoUrl);
+        progress.report(STAGE_INSTANCES, 0, initialInstances);
+        for (int i = 0; i < initialInstances; i++) {
             try {
-                Files.createDirectories(instancePath);
-                gitClient.cloneLocal(projectDir.toFile(), instancePath.toFile());
-                
-                ProjectInstanceEntity instance = new ProjectInstanceEntity();
-                instance.setProject(entity);
-                instance.setLocalPath(instancePath.toString());
-                instance.setBusy(false);
+                ProjectInstanceEntity instance = provisioner.createInstance(entity);
                 entity.getInstances().add(instance);
-                log.info("Instance {} created at {}", i + 1, instancePath);
+                log.info("Instance {} created at {}", i + 1, instance.getLocalPath());
             } catch (Exception e) {
                 log.error("Failed to create instance {} for {}: {}", i, repoUrl, e.getMessage());
                 // Non-critical, we continue if at least main repo is cloned
             }
+            progress.report(STAGE_INSTANCES, i + 1, initialInstances);
         }
 
         try {
@@ -345,7 +387,7 @@ public class GitProjectService {
     }
 
     /**
-     * Deletes all projects whose TTL has expired.
+     * Deletes all projects whose TTL has expired, together with their cached commit metrics.
      */
     @Transactional
     public void cleanupExpiredProjectOnce() {
@@ -361,7 +403,11 @@ public class GitProjectService {
             for (ProjectInstanceEntity instance : project.getInstances()) {
                 fileManager.deleteDirectory(new File(instance.getLocalPath()));
             }
-            
+
+            commitMetricsCache.evictProject(project.getId());
+            arbitrator.evictProject(project.getId());
+            commitHistoryIndex.evictProject(project.getId());
+            analysisJobService.evictProject(project.getId());
             projectAccessService.delete(project);
         }
     }
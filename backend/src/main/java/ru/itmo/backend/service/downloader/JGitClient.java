@@ -1,9 +1,25 @@
 package ru.itmo.backend.service.downloader;
 
+import org.eclipse.jgit.api.CreateBranchCommand;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffFormatter;
 import org.eclipse.jgit.errors.RepositoryNotFoundException;
+import org.eclipse.jgit.errors.RevisionSyntaxException;
 import org.eclipse.jgit.api.errors.TransportException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.ProgressMonitor;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.transport.URIish;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.util.io.DisabledOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -12,8 +28,17 @@ import ru.itmo.backend.exception.*;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.UnknownHostException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
 
 @Service
 public class JGitClient implements GitClient {
@@ -39,11 +64,17 @@ public class JGitClient implements GitClient {
 
     @Override
     public void cloneProject(String url, File dir) throws GitAPIException {
+        cloneProject(url, dir, NullProgressMonitor.INSTANCE);
+    }
+
+    @Override
+    public void cloneProject(String url, File dir, ProgressMonitor monitor) throws GitAPIException {
         try {
-        Git.cloneRepository()
-                .setURI(url)
-                .setDirectory(dir)
+            Git.cloneRepository()
+                    .setURI(url)
+                    .setDirectory(dir)
                     .setTimeout(operationTimeoutSeconds)
+                    .setProgressMonitor(monitor)
                     .call();
         } catch (GitAPIException e) {
             log.error("Failed to clone repository {} to {} (timeout: {}s)", url, dir, operationTimeoutSeconds, e);
@@ -64,9 +95,68 @@ public class JGitClient implements GitClient {
         }
     }
 
+    @Override
+    public void cloneShared(File source, File destination) throws GitOperationException {
+        try (Git sourceGit = Git.open(source);
+             Git git = Git.init().setDirectory(destination).call()) {
+            Repository sourceRepo = sourceGit.getRepository();
+            Repository repo = git.getRepository();
+
+            // Objects of the source are looked up through alternates instead of being copied
+            Path alternates = repo.getObjectDatabase().getDirectory().toPath().resolve("info").resolve("alternates");
+            Files.createDirectories(alternates.getParent());
+            Files.writeString(alternates, sourceRepo.getObjectDatabase().getDirectory().getAbsolutePath() + "\n");
+
+            git.remoteAdd()
+                    .setName(Constants.DEFAULT_REMOTE_NAME)
+                    .setUri(new URIish(source.getAbsolutePath()))
+                    .call();
+            // Every wanted object is already reachable, so only refs are transferred
+            git.fetch().setRemote(Constants.DEFAULT_REMOTE_NAME).call();
+
+            String head = sourceRepo.getFullBranch();
+            if (head != null && head.startsWith(Constants.R_HEADS)) {
+                String branch = Repository.shortenRefName(head);
+                git.checkout()
+                        .setCreateBranch(true)
+                        .setName(branch)
+                        .setStartPoint(Constants.DEFAULT_REMOTE_NAME + "/" + branch)
+                        .setUpstreamMode(CreateBranchCommand.SetupUpstreamMode.SET_UPSTREAM)
+                        .call();
+            } else if (head != null) {
+                git.checkout().setName(head).call();
+            }
+            log.info("Created instance {} sharing objects of {}", destination, source);
+        } catch (Exception e) {
+            log.error("Failed to create shared clone of {} at {}", source, destination, e);
+            throw new GitOperationException("Shared clone failed: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void fetchProject(File dir) throws GitOperationException {
+        try (Git git = Git.open(dir)) {
+            git.fetch()
+                    .setRemote(Constants.DEFAULT_REMOTE_NAME)
+                    .setTimeout(operationTimeoutSeconds)
+                    .call();
+        } catch (Exception e) {
+            log.error("Failed to fetch in {}", dir, e);
+            throw new GitOperationException("Fetch failed: " + e.getMessage(), e);
+        }
+    }
+
     @Override
     public void checkout(File dir, String commitSha) throws GitOperationException {
         try (Git git = Git.open(dir)) {
+            if (!hasCommit(git.getRepository(), commitSha)) {
+                // The instance has not been synced with the main repository yet
+                log.info("Commit {} is not present in {}, fetching", commitSha, dir);
+                git.fetch()
+                        .setRemote(Constants.DEFAULT_REMOTE_NAME)
+                        .setTimeout(operationTimeoutSeconds)
+                        .call();
+            }
             git.checkout()
                     .setName(commitSha)
                 .call();
@@ -77,6 +167,15 @@ public class JGitClient implements GitClient {
         }
     }
 
+    private static boolean hasCommit(Repository repo, String commitSha) {
+        try {
+            ObjectId id = repo.resolve(commitSha + "^{commit}");
+            return id != null && repo.getObjectDatabase().has(id);
+        } catch (IOException | RevisionSyntaxException e) {
+            return false;
+        }
+    }
+
     @Override
     public boolean isValidGitRepository(File dir) throws IOException {
         if (dir == null || !dir.exists() || !dir.isDirectory()) {
@@ -182,4 +281,107 @@ public class JGitClient implements GitClient {
             throw new GitOperationException(message, e);
         }
     }
+
+    @Override
+    public Optional<String> findNearestAncestor(File dir, String commitSha, Set<String> candidates, int maxDepth) throws GitOperationException {
+        try (Git git = Git.open(dir); RevWalk walk = new RevWalk(git.getRepository())) {
+            walk.setRetainBody(false);
+            RevCommit start = walk.parseCommit(resolveCommit(git.getRepository(), commitSha));
+            walk.markStart(start);
+
+            int inspected = 0;
+            for (RevCommit commit : walk) {
+                if (commit.equals(start)) {
+                    continue;
+                }
+                if (inspected == maxDepth) {
+                    break;
+                }
+                inspected++;
+                if (candidates.contains(commit.getName())) {
+                    return Optional.of(commit.getName());
+                }
+            }
+            return Optional.empty();
+        } catch (Exception e) {
+            log.error("Failed to look up ancestors of {} in {}", commitSha, dir, e);
+            throw new GitOperationException("Ancestor lookup failed: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public List<DiffEntry> diffCommits(File dir, String oldCommitSha, String newCommitSha) throws GitOperationException {
+        try (Git git = Git.open(dir);
+             RevWalk walk = new RevWalk(git.getRepository());
+             DiffFormatter formatter = new DiffFormatter(DisabledOutputStream.INSTANCE)) {
+            Repository repo = git.getRepository();
+            formatter.setRepository(repo);
+            // Only file-level changes are needed; unchanged subtrees are skipped without being read
+            return formatter.scan(walk.parseCommit(resolveCommit(repo, oldCommitSha)).getTree(),
+                    walk.parseCommit(resolveCommit(repo, newCommitSha)).getTree());
+        } catch (Exception e) {
+            log.error("Failed to diff {}..{} in {}", oldCommitSha, newCommitSha, dir, e);
+            throw new GitOperationException("Diff failed: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Map<String, String> materializeTree(File dir, String commitSha, Predicate<String> pathFilter, Predicate<String> blobFilter,
+                                               Path targetDir) throws GitOperationException {
+        try (Git git = Git.open(dir);
+             RevWalk walk = new RevWalk(git.getRepository());
+             TreeWalk treeWalk = new TreeWalk(git.getRepository())) {
+            Repository repo = git.getRepository();
+            treeWalk.setRecursive(true);
+            treeWalk.addTree(walk.parseCommit(resolveCommit(repo, commitSha)).getTree());
+            ObjectReader reader = treeWalk.getObjectReader();
+            Path root = targetDir.toAbsolutePath().normalize();
+
+            Map<String, String> listed = new HashMap<>();
+            int written = 0;
+            while (treeWalk.next()) {
+                FileMode mode = treeWalk.getFileMode(0);
+                if (mode.getObjectType() != Constants.OBJ_BLOB || mode == FileMode.SYMLINK) {
+                    continue;
+                }
+                String path = treeWalk.getPathString();
+                if (!pathFilter.test(path)) {
+                    continue;
+                }
+                // Tree entries come from an untrusted repository and may contain ".." or absolute paths
+                Path target = root.resolve(path).normalize();
+                if (!target.startsWith(root) || target.equals(root)) {
+                    throw new GitOperationException("Commit " + commitSha + " contains an unsafe path: " + path);
+                }
+
+                ObjectId blobId = treeWalk.getObjectId(0);
+                listed.put(path, blobId.name());
+                if (!blobFilter.test(blobId.name())) {
+                    continue;
+                }
+
+                Files.createDirectories(target.getParent());
+                try (OutputStream out = Files.newOutputStream(target)) {
+                    reader.open(blobId, Constants.OBJ_BLOB).copyTo(out);
+                }
+                written++;
+            }
+            log.debug("Materialized {} of {} files of commit {} from {} into {}", written, listed.size(), commitSha, dir, targetDir);
+            return listed;
+        } catch (GitOperationException e) {
+            log.error("Refused to materialize commit {} of {}: {}", commitSha, dir, e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            log.error("Failed to materialize commit {} of {}", commitSha, dir, e);
+            throw new GitOperationException("Reading commit tree failed: " + e.getMessage(), e);
+        }
+    }
+
+    private static ObjectId resolveCommit(Repository repo, String commitSha) throws IOException {
+        ObjectId id = repo.resolve(commitSha);
+        if (id == null) {
+            throw new IllegalArgumentException("Commit not found: " + commitSha);
+        }
+        return id;
+    }
 }
@@ -0,0 +1,211 @@
+package ru.itmo.backend.service.downloader;
+
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import ru.itmo.backend.entity.GitProjectEntity;
+import ru.itmo.backend.entity.ProjectInstanceEntity;
+import ru.itmo.backend.exception.GitOperationException;
+import ru.itmo.backend.repo.GitProjectEntityRepository;
+import ru.itmo.backend.repo.ProjectInstanceRepository;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates and removes working copies (instances) of cloned projects.
+ * <p>
+ * A project starts with {@code initialInstances} instances; further ones are provisioned in the
+ * background on demand, up to {@code maxInstances}. Instances idle for longer than the idle timeout
+ * may be removed again, down to {@code minInstances}.
+ */
+@Service
+public class ProjectInstanceProvisioner implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ProjectInstanceProvisioner.class);
+
+    private final GitClient gitClient;
+    private final FileManager fileManager;
+    private final GitProjectEntityRepository projectRepository;
+    private final ProjectInstanceRepository instanceRepository;
+    private final Path storagePath;
+    private final boolean sharedObjects;
+    private final int initialInstances;
+    private final int minInstances;
+    private final int maxInstances;
+    private final Duration idleTimeout;
+    private final ExecutorService executor;
+
+    /**
+     * @param storagePath        base directory where instances are stored
+     * @param sharedObjects      whether instances read objects of the main repository instead of copying them
+     * @param initialInstances   number of instances created together with the project
+     * @param minInstances       number of instances never removed for being idle
+     * @param maxInstances       maximum number of instances of a project
+     * @param idleTimeoutMinutes time after the last use when an instance may be removed
+     * @param parallelism        maximum number of instances created or synchronized at once
+     */
+    public ProjectInstanceProvisioner(
+            GitClient gitClient,
+            FileManager fileManager,
+            GitProjectEntityRepository projectRepository,
+            ProjectInstanceRepository instanceRepository,
+            @Value("${repository.storage.path}") String storagePath,
+            @Value("${repository.instances.shared-objects:true}") boolean sharedObjects,
+            @Value("${repository.instances.initial:1}") int initialInstances,
+            @Value("${repository.instances.min:1}") int minInstances,
+            @Value("${repository.instances.count:6}") int maxInstances,
+            @Value("${repository.instances.idle-timeout-minutes:30}") long idleTimeoutMinutes,
+            @Value("${repository.instances.sync-parallelism:4}") int parallelism
+    ) {
+        this.gitClient = gitClient;
+        this.fileManager = fileManager;
+        this.projectRepository = projectRepository;
+        this.instanceRepository = instanceRepository;
+        this.storagePath = Path.of(storagePath).toAbsolutePath().normalize();
+        this.sharedObjects = sharedObjects;
+        this.maxInstances = Math.max(1, maxInstances);
+        this.minInstances = Math.min(Math.max(0, minInstances), this.maxInstances);
+        this.initialInstances = Math.min(Math.max(this.minInstances, initialInstances), this.maxInstances);
+        this.idleTimeout = Duration.ofMinutes(idleTimeoutMinutes);
+        this.executor = Executors.newFixedThreadPool(Math.max(1, parallelism), new CustomizableThreadFactory("instance-provisioner-"));
+    }
+
+    public int getInitialInstances() {
+        return initialInstances;
+    }
+
+    public int getMinInstances() {
+        return minInstances;
+    }
+
+    public int getMaxInstances() {
+        return maxInstances;
+    }
+
+    public Duration getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * Creates a new instance of a project. Neither the instance nor the project are saved.
+     *
+     * @param project project whose main repository is cloned
+     * @return created instance
+     */
+    public ProjectInstanceEntity createInstance(GitProjectEntity project) throws Exception {
+        Path instancePath = storagePath.resolve(UUID.randomUUID().toString());
+        try {
+            Files.createDirectories(instancePath);
+            cloneInstance(new File(project.getLocalPath()), instancePath.toFile());
+        } catch (Exception e) {
+            fileManager.deleteDirectory(instancePath.toFile());
+            throw e;
+        }
+
+        ProjectInstanceEntity instance = new ProjectInstanceEntity();
+        instance.setProject(project);
+        instance.setLocalPath(instancePath.toString());
+        instance.setBusy(false);
+        instance.setLastUsedAt(LocalDateTime.now());
+        return instance;
+    }
+
+    /**
+     * Clones the main repository into an instance directory, sharing its objects if enabled.
+     */
+    public void cloneInstance(File projectDir, File instanceDir) throws GitAPIException, GitOperationException {
+        if (sharedObjects) {
+            gitClient.cloneShared(projectDir, instanceDir);
+        } else {
+            gitClient.cloneLocal(projectDir, instanceDir);
+        }
+    }
+
+    /**
+     * Creates and stores a new instance of a project in the background.
+     *
+     * @param projectId project ID
+     * @return future completed with the stored instance
+     */
+    public CompletableFuture<ProjectInstanceEntity> provision(Long projectId) {
+        return CompletableFuture.supplyAsync(() -> {
+            GitProjectEntity project = projectRepository.findById(projectId)
+                    .orElseThrow(() -> new IllegalStateException("Project " + projectId + " no longer exists"));
+            ProjectInstanceEntity instance;
+            try {
+                instance = createInstance(project);
+            } catch (Exception e) {
+                throw new IllegalStateException("Failed to create instance of project " + projectId, e);
+            }
+
+            try {
+                ProjectInstanceEntity saved = instanceRepository.save(instance);
+                log.info("Provisioned instance {} (path: {}) for project {}", saved.getId(), saved.getLocalPath(), projectId);
+                return saved;
+            } catch (RuntimeException e) {
+                fileManager.deleteDirectory(new File(instance.getLocalPath()));
+                throw e;
+            }
+        }, executor);
+    }
+
+    /**
+     * Brings instances up to date with the main repository in the background, several at a time.
+     * Instances only fetch from the main repository, so neither the network nor working trees are touched;
+     * missing instance directories are recreated.
+     *
+     * @param projectDir   main repository directory
+     * @param instanceDirs instance directories
+     * @return future completed when all instances are processed, failures are logged
+     */
+    public CompletableFuture<Void> syncInstances(File projectDir, List<File> instanceDirs) {
+        log.info("Synchronizing {} instances of {}", instanceDirs.size(), projectDir);
+        return CompletableFuture.allOf(instanceDirs.stream()
+                .map(instanceDir -> CompletableFuture.runAsync(() -> syncInstance(projectDir, instanceDir), executor))
+                .toArray(CompletableFuture[]::new));
+    }
+
+    private void syncInstance(File projectDir, File instanceDir) {
+        try {
+            if (instanceDir.exists()) {
+                gitClient.fetchProject(instanceDir);
+                log.info("Synced instance {}", instanceDir);
+            } else {
+                log.warn("Instance directory missing, recreating: {}", instanceDir);
+                cloneInstance(projectDir, instanceDir);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to sync instance {}: {}", instanceDir, e.getMessage());
+        }
+    }
+
+    /**
+     * Removes an instance from disk and from the database.
+     *
+     * @param instance instance that is no longer handed out
+     */
+    public void retire(ProjectInstanceEntity instance) {
+        fileManager.deleteDirectory(new File(instance.getLocalPath()));
+        instanceRepository.deleteById(instance.getId());
+        log.info("Removed idle instance {} (path: {})", instance.getId(), instance.getLocalPath());
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(60, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,63 @@
+package ru.itmo.backend.service.downloader;
+
+import org.eclipse.jgit.lib.ProgressMonitor;
+import ru.itmo.backend.service.jobs.ProgressReporter;
+
+/**
+ * Forwards JGit progress to a {@link ProgressReporter}.
+ * Updates within a task are forwarded at most once per percent of known work, or once per
+ * {@value #UNKNOWN_TOTAL_STEP} units when the total is unknown.
+ */
+public class ReportingProgressMonitor implements ProgressMonitor {
+
+    private static final int UNKNOWN_TOTAL_STEP = 1000;
+
+    private final ProgressReporter reporter;
+    private String task;
+    private int total;
+    private int completed;
+    private int reported;
+
+    public ReportingProgressMonitor(ProgressReporter reporter) {
+        this.reporter = reporter;
+    }
+
+    @Override
+    public void start(int totalTasks) {
+    }
+
+    @Override
+    public void beginTask(String title, int totalWork) {
+        task = title;
+        total = totalWork == UNKNOWN ? 0 : totalWork;
+        completed = 0;
+        reported = 0;
+        reporter.report(task, 0, total);
+    }
+
+    @Override
+    public void update(int completed) {
+        this.completed += completed;
+        int step = total > 0 ? Math.max(1, total / 100) : UNKNOWN_TOTAL_STEP;
+        if (this.completed - reported >= step) {
+            reported = this.completed;
+            reporter.report(task, this.completed, total);
+        }
+    }
+
+    @Override
+    public void endTask() {
+        if (task != null) {
+            reporter.report(task, total > 0 ? total : completed, total);
+        }
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public void showDuration(boolean enabled) {
+    }
+}
@@ -0,0 +1,116 @@
+package ru.itmo.backend.service.jobs;
+
+import ru.itmo.backend.dto.response.job.JobDTO;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Asynchronous job tracked by {@link JobService}. State changes are published to listeners.
+ *
+ * @param <T> type of the job result
+ */
+public class Job<T> implements ProgressReporter {
+
+    private final String id;
+    private final String type;
+    private final long createdAt = System.currentTimeMillis();
+    private final List<Consumer<JobDTO>> listeners = new CopyOnWriteArrayList<>();
+
+    private JobStatus status = JobStatus.QUEUED;
+    private String stage;
+    private int completed;
+    private int total;
+    private T result;
+    private String error;
+    private long updatedAt = createdAt;
+
+    Job(String id, String type) {
+        this.id = id;
+        this.type = type;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public synchronized JobStatus getStatus() {
+        return status;
+    }
+
+    public synchronized T getResult() {
+        return result;
+    }
+
+    public synchronized long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public synchronized JobDTO toDto() {
+        return new JobDTO(id, type, status, stage, completed, total, result, error, createdAt, updatedAt);
+    }
+
+    /**
+     * Registers a listener of state changes and immediately passes it the current state.
+     * Listeners are not called after the job is finished.
+     *
+     * @return handle removing the listener
+     */
+    public Runnable subscribe(Consumer<JobDTO> listener) {
+        listeners.add(listener);
+        listener.accept(toDto());
+        return () -> listeners.remove(listener);
+    }
+
+    @Override
+    public void report(String stage, int completed, int total) {
+        synchronized (this) {
+            if (status.isFinished()) {
+                return;
+            }
+            this.stage = stage;
+            this.completed = completed;
+            this.total = total;
+        }
+        publish();
+    }
+
+    void start() {
+        synchronized (this) {
+            status = JobStatus.RUNNING;
+        }
+        publish();
+    }
+
+    void succeed(T result) {
+        synchronized (this) {
+            this.status = JobStatus.SUCCEEDED;
+            this.result = result;
+        }
+        publish();
+        listeners.clear();
+    }
+
+    void fail(Throwable error) {
+        synchronized (this) {
+            this.status = JobStatus.FAILED;
+            this.error = error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName();
+        }
+        publish();
+        listeners.clear();
+    }
+
+    private void publish() {
+        JobDTO snapshot;
+        synchronized (this) {
+            updatedAt = System.currentTimeMillis();
+            snapshot = toDto();
+        }
+        listeners.forEach(listener -> listener.accept(snapshot));
+    }
+}
@@ -0,0 +1,100 @@
+package ru.itmo.backend.service.jobs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs long operations outside of request threads.
+ * <p>
+ * Jobs are executed on a small dedicated pool and kept in memory until some time after they finish,
+ * so clients can poll or stream their state by ID.
+ */
+@Service
+public class JobService implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(JobService.class);
+
+    private final ExecutorService executor;
+    private final long retentionMillis;
+    private final Map<String, Job<?>> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * @param poolSize         number of jobs running at once, the rest are queued
+     * @param retentionMinutes time a finished job stays available
+     */
+    public JobService(@Value("${jobs.pool-size:4}") int poolSize,
+                      @Value("${jobs.retention-minutes:60}") long retentionMinutes) {
+        this.executor = Executors.newFixedThreadPool(Math.max(1, poolSize), new CustomizableThreadFactory("job-"));
+        this.retentionMillis = TimeUnit.MINUTES.toMillis(retentionMinutes);
+    }
+
+    /**
+     * Queues a job for execution.
+     *
+     * @param type kind of work, reported to clients
+     * @param task work to perform
+     * @return queued job
+     */
+    public <T> Job<T> submit(String type, JobTask<T> task) {
+        return submit(type, task, executor);
+    }
+
+    /**
+     * Queues a job for execution on a caller-provided executor, for jobs needing their own concurrency limits.
+     *
+     * @param type     kind of work, reported to clients
+     * @param task     work to perform
+     * @param executor executor running the job
+     * @return queued job
+     */
+    public <T> Job<T> submit(String type, JobTask<T> task, Executor executor) {
+        Job<T> job = new Job<>(UUID.randomUUID().toString(), type);
+        jobs.put(job.getId(), job);
+        executor.execute(() -> run(job, task));
+        log.info("Queued {} job {}", type, job.getId());
+        return job;
+    }
+
+    private <T> void run(Job<T> job, JobTask<T> task) {
+        job.start();
+        try {
+            job.succeed(task.run(job));
+            log.info("{} job {} succeeded", job.getType(), job.getId());
+        } catch (Exception e) {
+            log.warn("{} job {} failed: {}", job.getType(), job.getId(), e.getMessage(), e);
+            job.fail(e);
+        }
+    }
+
+    public Optional<Job<?>> find(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    /**
+     * Forgets jobs that finished longer than the retention time ago.
+     */
+    @Scheduled(fixedDelay = 60 * 1000)
+    public void removeFinishedJobs() {
+        long threshold = System.currentTimeMillis() - retentionMillis;
+        jobs.values().removeIf(job -> job.getStatus().isFinished() && job.getUpdatedAt() < threshold);
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(60, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,11 @@
+package ru.itmo.backend.service.jobs;
+
+/**
+ * Work performed by a job.
+ *
+ * @param <T> type of the job result
+ */
+@FunctionalInterface
+public interface JobTask<T> {
+    T run(ProgressReporter progress) throws Exception;
+}
@@ -0,0 +1,18 @@
+package ru.itmo.backend.service.jobs;
+
+/**
+ * Receives progress of a long-running operation.
+ */
+@FunctionalInterface
+public interface ProgressReporter {
+
+    ProgressReporter NONE = (stage, completed, total) -> {
+    };
+
+    /**
+     * @param stage     human-readable name of the current stage
+     * @param completed units of work done in the stage
+     * @param total     units of work in the stage, 0 if unknown
+     */
+    void report(String stage, int completed, int total);
+}
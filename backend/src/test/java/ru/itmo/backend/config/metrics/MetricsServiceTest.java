@@ -7,6 +7,8 @@ import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class MetricsServiceTest {
@@ -126,5 +128,31 @@ class MetricsServiceTest {
         assertNotNull(errorCounter);
         assertEquals(1.0, errorCounter.count());
     }
-}
 
+    @Test
+    void testMetricsCache_RecordsHitsAndMisses() {
+        metricsService.recordMetricsCacheHit();
+        metricsService.recordMetricsCacheHit();
+        metricsService.recordMetricsCacheMiss();
+
+        Counter hits = meterRegistry.find("babel.analysis.cache.hits").counter();
+        Counter misses = meterRegistry.find("babel.analysis.cache.misses").counter();
+        assertNotNull(hits);
+        assertNotNull(misses);
+        assertEquals(2.0, hits.count());
+        assertEquals(1.0, misses.count());
+    }
+
+    @Test
+    void testInstanceQueue_RecordsQueueLengthAndWait() {
+        metricsService.recordInstanceQueued();
+        metricsService.recordInstanceQueued();
+        metricsService.recordInstanceDequeued();
+        metricsService.recordInstanceWait(Duration.ofMillis(20));
+
+        assertEquals(1.0, meterRegistry.find("babel.instances.queue.length").gauge().value());
+        Timer timer = meterRegistry.find("babel.instances.wait.duration").timer();
+        assertNotNull(timer);
+        assertEquals(1, timer.count());
+    }
+}
@@ -1,6 +1,7 @@
 package ru.itmo.backend.downloader;
 
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ProgressMonitor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
@@ -13,8 +14,15 @@ import ru.itmo.backend.service.downloader.FileManager;
 import ru.itmo.backend.service.downloader.GitClient;
 import ru.itmo.backend.service.downloader.GitProjectService;
 import ru.itmo.backend.service.downloader.ProjectAccessService;
+import ru.itmo.backend.service.downloader.ProjectInstanceProvisioner;
+import ru.itmo.backend.repo.GitProjectEntityRepository;
 import ru.itmo.backend.repo.ProjectInstanceRepository;
 import ru.itmo.backend.service.analysis.CodeAnalysisService;
+import ru.itmo.backend.service.CommitHistoryIndex;
+import ru.itmo.backend.service.ProjectInstanceArbitrator;
+import ru.itmo.backend.service.analysis.AnalysisJobService;
+import ru.itmo.backend.service.analysis.CommitMetricsCache;
+import ru.itmo.backend.service.analysis.PreAnalysisService;
 
 import java.io.File;
 import java.io.IOException;
@@ -42,6 +50,11 @@ public class GitProjectServiceTest {
     private ProjectInstanceRepository instanceRepository;
     private MetricsService metricsService;
     private CodeAnalysisService codeAnalysisService;
+    private CommitMetricsCache commitMetricsCache;
+    private ProjectInstanceArbitrator arbitrator;
+    private CommitHistoryIndex commitHistoryIndex;
+    private AnalysisJobService analysisJobService;
+    private PreAnalysisService preAnalysisService;
 
     private GitProjectService service;
     private Path tempStorage;
@@ -53,7 +66,16 @@ public class GitProjectServiceTest {
      */
     private class TestableGitProjectService extends GitProjectService {
         public TestableGitProjectService() {
-            super(gitClient, fileManager, accessService, instanceRepository, metricsService, codeAnalysisService, tempStorage.toString(), 24, 1024, 6);
+            this(false);
+        }
+
+        public TestableGitProjectService(boolean sharedObjects) {
+            super(gitClient, fileManager, accessService, instanceRepository, metricsService, codeAnalysisService, commitMetricsCache, arbitrator, commitHistoryIndex,
+                    analysisJobService,
+                    new ProjectInstanceProvisioner(gitClient, fileManager, mock(GitProjectEntityRepository.class), instanceRepository,
+                            tempStorage.toString(), sharedObjects, 1, 1, 6, 30, 2),
+                    preAnalysisService,
+                    tempStorage.toString(), 24, 1024);
         }
 
         @Override
@@ -70,6 +92,11 @@ public class GitProjectServiceTest {
         instanceRepository = mock(ProjectInstanceRepository.class);
         metricsService = mock(MetricsService.class);
         codeAnalysisService = mock(CodeAnalysisService.class);
+        commitMetricsCache = mock(CommitMetricsCache.class);
+        arbitrator = mock(ProjectInstanceArbitrator.class);
+        commitHistoryIndex = mock(CommitHistoryIndex.class);
+        analysisJobService = mock(AnalysisJobService.class);
+        preAnalysisService = mock(PreAnalysisService.class);
 
         tempStorage = Files.createTempDirectory("git-repo-test-");
         service = new TestableGitProjectService();
@@ -98,8 +125,11 @@ public class GitProjectServiceTest {
         assertEquals(UpdateStatus.UPDATED, result.updateStatus());
 
         verify(gitClient).pullProject(new File(entity.getLocalPath()));
-        verify(gitClient).pullProject(new File(instance.getLocalPath()));
+        // Instances fetch from the main repository in the background
+        verify(gitClient, timeout(1000)).fetchProject(new File(instance.getLocalPath()));
+        verify(gitClient, never()).pullProject(new File(instance.getLocalPath()));
         verify(fileManager, never()).deleteDirectory(any());
+        verify(preAnalysisService).schedule(entity);
     }
 
     @Test
@@ -117,7 +147,7 @@ public class GitProjectServiceTest {
 
         assertEquals(UpdateStatus.CLONED, result.updateStatus());
 
-        verify(gitClient).cloneProject(eq("http://repo"), any(File.class));
+        verify(gitClient).cloneProject(eq("http://repo"), any(File.class), any(ProgressMonitor.class));
         verify(gitClient, atLeast(1)).cloneLocal(any(File.class), any(File.class));
         verify(gitClient).isValidGitRepository(any(File.class));
 
@@ -128,7 +158,25 @@ public class GitProjectServiceTest {
         assertEquals("http://repo", saved.getUrl());
         assertEquals(FIXED_NOW, saved.getCreatedAt());
         assertEquals(FIXED_NOW.plusHours(24), saved.getExpiresAt());
-        assertEquals(6, saved.getInstances().size());
+        // Further instances are provisioned on demand
+        assertEquals(1, saved.getInstances().size());
+        verify(preAnalysisService).schedule(saved);
+    }
+
+    @Test
+    void testGetOrCloneProject_CreatesSharedInstances() throws Exception {
+        service = new TestableGitProjectService(true);
+        when(accessService.accessRepositoryByUrl("http://repo"))
+                .thenReturn(Optional.empty());
+        when(accessService.save(any(GitProjectEntity.class)))
+                .thenAnswer(i -> i.getArgument(0));
+        when(gitClient.isValidGitRepository(any(File.class)))
+                .thenReturn(true);
+
+        service.getOrCloneProject("http://repo");
+
+        verify(gitClient, times(1)).cloneShared(any(File.class), any(File.class));
+        verify(gitClient, never()).cloneLocal(any(File.class), any(File.class));
     }
 
     @Test
@@ -138,7 +186,7 @@ public class GitProjectServiceTest {
 
         doThrow(new GitAPIException("fail") {})
                 .when(gitClient)
-                .cloneProject(eq("http://repo"), any(File.class));
+                .cloneProject(eq("http://repo"), any(File.class), any(ProgressMonitor.class));
 
         assertThrows(GitAPIException.class, () ->
                 service.getOrCloneProject("http://repo")
@@ -160,7 +208,7 @@ public class GitProjectServiceTest {
                 service.getOrCloneProject("http://repo")
         );
 
-        verify(gitClient).cloneProject(eq("http://repo"), any(File.class));
+        verify(gitClient).cloneProject(eq("http://repo"), any(File.class), any(ProgressMonitor.class));
         verify(gitClient).isValidGitRepository(any(File.class));
         verify(fileManager).deleteDirectory(any(File.class));
     }
@@ -168,6 +216,7 @@ public class GitProjectServiceTest {
     @Test
     void testCleanupExpiredProjectOnce_DeletesExpired() throws IOException {
         GitProjectEntity expired1 = new GitProjectEntity();
+        expired1.setId(1L);
         expired1.setLocalPath(tempStorage.resolve("expired1").toString());
         expired1.setExpiresAt(FIXED_NOW.minusHours(1));
         
@@ -177,6 +226,7 @@ public class GitProjectServiceTest {
         expired1.getInstances().add(instance);
 
         GitProjectEntity expired2 = new GitProjectEntity();
+        expired2.setId(2L);
         expired2.setLocalPath(tempStorage.resolve("expired2").toString());
         expired2.setExpiresAt(FIXED_NOW.minusHours(2));
 
@@ -189,6 +239,15 @@ public class GitProjectServiceTest {
         verify(fileManager).deleteDirectory(new File(instance.getLocalPath()));
         verify(fileManager).deleteDirectory(new File(expired2.getLocalPath()));
 
+        verify(commitMetricsCache).evictProject(1L);
+        verify(commitMetricsCache).evictProject(2L);
+        verify(arbitrator).evictProject(1L);
+        verify(arbitrator).evictProject(2L);
+        verify(commitHistoryIndex).evictProject(1L);
+        verify(commitHistoryIndex).evictProject(2L);
+        verify(analysisJobService).evictProject(1L);
+        verify(analysisJobService).evictProject(2L);
+
         verify(accessService).delete(expired1);
         verify(accessService).delete(expired2);
     }
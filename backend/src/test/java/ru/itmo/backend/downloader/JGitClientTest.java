@@ -0,0 +1,112 @@
+package ru.itmo.backend.downloader;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.TreeFormatter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.itmo.backend.exception.GitOperationException;
+import ru.itmo.backend.service.downloader.JGitClient;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link JGitClient} on local repositories.
+ */
+public class JGitClientTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path repoDir;
+    private JGitClient client;
+
+    @BeforeEach
+    void setup() throws Exception {
+        repoDir = tempDir.resolve("repo");
+        Git.init().setDirectory(repoDir.toFile()).call().close();
+        client = new JGitClient(300, 30);
+    }
+
+    @Test
+    void testMaterializeTree_WritesFilesWithBlobIds() throws Exception {
+        String commitSha;
+        try (Git git = Git.open(repoDir.toFile()); ObjectInserter inserter = git.getRepository().newObjectInserter()) {
+            ObjectId blob = inserter.insert(Constants.OBJ_BLOB, "class A {}".getBytes(StandardCharsets.UTF_8));
+            TreeFormatter src = new TreeFormatter();
+            src.append("A.java", FileMode.REGULAR_FILE, blob);
+            TreeFormatter root = new TreeFormatter();
+            root.append("src", FileMode.TREE, inserter.insert(src));
+            commitSha = commit(inserter, inserter.insert(root)).name();
+            Path target = tempDir.resolve("workspace");
+
+            Map<String, String> listed = client.materializeTree(repoDir.toFile(), commitSha, path -> true, blobId -> true, target);
+
+            assertEquals(Map.of("src/A.java", blob.name()), listed);
+            assertEquals("class A {}", Files.readString(target.resolve("src/A.java")));
+        }
+    }
+
+    @Test
+    void testMaterializeTree_RejectsPathsOutsideTargetDir() throws Exception {
+        try (Git git = Git.open(repoDir.toFile()); ObjectInserter inserter = git.getRepository().newObjectInserter()) {
+            // A crafted tree with a ".." entry, which git itself refuses to check out
+            ObjectId blob = inserter.insert(Constants.OBJ_BLOB, "escaped".getBytes(StandardCharsets.UTF_8));
+            TreeFormatter parent = new TreeFormatter();
+            parent.append("Evil.java", FileMode.REGULAR_FILE, blob);
+            TreeFormatter root = new TreeFormatter();
+            root.append("..", FileMode.TREE, inserter.insert(parent));
+            String commitSha = commit(inserter, inserter.insert(root)).name();
+            Path target = Files.createDirectories(tempDir.resolve("scratch").resolve("workspace"));
+
+            assertThrows(GitOperationException.class, () ->
+                    client.materializeTree(repoDir.toFile(), commitSha, path -> true, blobId -> true, target));
+            assertFalse(Files.exists(tempDir.resolve("scratch").resolve("Evil.java")));
+        }
+    }
+
+    @Test
+    void testFindNearestAncestor_InspectsAtMostMaxDepthAncestors() throws Exception {
+        try (Git git = Git.open(repoDir.toFile()); ObjectInserter inserter = git.getRepository().newObjectInserter()) {
+            ObjectId tree = inserter.insert(new TreeFormatter());
+            // history[i] is i commits behind history[0]
+            ObjectId[] history = new ObjectId[5];
+            history[4] = commit(inserter, tree);
+            for (int i = 3; i >= 0; i--) {
+                history[i] = commit(inserter, tree, history[i + 1]);
+            }
+            String head = history[0].name();
+            Set<String> evaluated = Set.of(history[3].name());
+
+            assertEquals(Optional.of(history[3].name()), client.findNearestAncestor(repoDir.toFile(), head, evaluated, 3));
+            assertEquals(Optional.empty(), client.findNearestAncestor(repoDir.toFile(), head, evaluated, 2));
+            assertEquals(Optional.empty(), client.findNearestAncestor(repoDir.toFile(), head, Set.of(head), 3));
+        }
+    }
+
+    private ObjectId commit(ObjectInserter inserter, ObjectId tree, ObjectId... parents) throws Exception {
+        PersonIdent author = new PersonIdent("author", "author@example.com");
+        CommitBuilder commit = new CommitBuilder();
+        commit.setTreeId(tree);
+        commit.setParentIds(parents);
+        commit.setAuthor(author);
+        commit.setCommitter(author);
+        commit.setMessage("commit");
+        ObjectId id = inserter.insert(commit);
+        inserter.flush();
+        return id;
+    }
+}
@@ -5,6 +5,7 @@ import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.Test;
 import ru.itmo.backend.evaluator.evaluators.JavaMetricEvaluator;
 import ru.itmo.backend.evaluator.model.ClassMetric;
+import ru.itmo.backend.evaluator.model.NumericMetric;
 
 import java.io.File;
 import java.io.IOException;
@@ -32,6 +33,16 @@ class JavaMetricEvaluatorTest {
         }
     }
 
+    @Test
+    void getMultilinePackageName() {
+        try {
+            String filePath = "src/test/test-data/java/MultilinePackageName.java";
+            Assertions.assertEquals("test.multiline.name", JavaMetricEvaluator.getPackageName(filePath));
+        } catch (MetricEvaluationException e) {
+            Assertions.fail(e);
+        }
+    }
+
     @Test
     void runMetrics() {
         Assumptions.assumeTrue(isLizardAvailable(), "Lizard tool is not available in the environment");
@@ -42,7 +53,7 @@ class JavaMetricEvaluatorTest {
             Assertions.assertTrue(metrics.containsKey("test.test.a.A"));
             ClassMetric aMetric = metrics.get("test.test.a.A");
             Assertions.assertEquals(2, aMetric.methods().size());
-            Assertions.assertEquals("5", aMetric.methods().get("foo").own().get("CCN"));
+            Assertions.assertEquals(5, aMetric.methods().get("foo").value(NumericMetric.CCN));
         } catch (MetricEvaluationException | IOException e) {
             Assertions.fail(e);
         }
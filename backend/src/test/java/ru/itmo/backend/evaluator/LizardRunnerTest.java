@@ -3,7 +3,10 @@ package ru.itmo.backend.evaluator;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.Test;
+import ru.itmo.backend.evaluator.lizard.LizardRecord;
+import ru.itmo.backend.evaluator.lizard.LizardResultCache;
 import ru.itmo.backend.evaluator.lizard.LizardRunner;
+import ru.itmo.backend.evaluator.lizard.ShardedLizardRunner;
 import ru.itmo.backend.evaluator.utils.FilesUtils;
 
 import java.io.File;
@@ -11,7 +14,11 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 class LizardRunnerTest {
 
@@ -39,6 +46,24 @@ class LizardRunnerTest {
         }
     }
 
+    @Test
+    void lizardStreamingParser() {
+        try {
+            Reader reader = new FileReader("src/test/test-data/lizard/lizard-output.csv");
+            List<LizardRecord> records = new ArrayList<>();
+            LizardRunner.parseLizardOutput(reader, records::add);
+
+            Assertions.assertEquals(5, records.size());
+            LizardRecord first = records.getFirst();
+            Assertions.assertEquals(7, first.nloc());
+            Assertions.assertEquals(3, first.ccn());
+            Assertions.assertEquals(1, first.params());
+            Assertions.assertEquals("H::A::first_function", first.fullName());
+        } catch (Exception e) {
+            Assertions.fail(e);
+        }
+    }
+
     @Test
     void runLizard() {
         Assumptions.assumeTrue(isLizardAvailable(), "Lizard tool is not available in the environment");
@@ -54,4 +79,90 @@ class LizardRunnerTest {
             Assertions.fail(e);
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void planShards() {
+        try {
+            List<Path> paths = FilesUtils.collectPaths(new File("src/test/test-data/"), a -> true);
+
+            var shards = ShardedLizardRunner.planShards(paths, 2, 1);
+            Assertions.assertEquals(2, shards.size());
+            Assertions.assertEquals(paths.size(), shards.stream().mapToInt(shard -> shard.paths().size()).sum());
+
+            var single = ShardedLizardRunner.planShards(paths, 2, Long.MAX_VALUE);
+            Assertions.assertEquals(1, single.size());
+            Assertions.assertEquals(paths.size(), single.getFirst().paths().size());
+        } catch (IOException e) {
+            Assertions.fail(e);
+        }
+    }
+
+    @Test
+    void runLizardFromBlobCache() {
+        try {
+            List<Path> paths = FilesUtils.collectPaths(new File("src/test/test-data/java/SmokeTest/"), a -> true);
+            Path file = paths.getFirst();
+            String blobId = FilesUtils.gitBlobId(file);
+            LizardRecord cached = new LizardRecord(3, 1, 10, 0, 3, "A::a@2-4@", "", "A::a");
+
+            var runner = new ShardedLizardRunner(null, 1, Long.MAX_VALUE, ShardedLizardRunner.ShardListener.NONE,
+                    new LizardResultCache() {
+                        @Override
+                        public Optional<List<LizardRecord>> get(String language, String id) {
+                            return id.equals(blobId) ? Optional.of(List.of(cached)) : Optional.empty();
+                        }
+
+                        @Override
+                        public void put(String language, String id, List<LizardRecord> records) {
+                            Assertions.fail("Cached blob must not be analyzed again");
+                        }
+                    });
+
+            List<LizardRecord> records = new ArrayList<>();
+            runner.runLizard("java", paths, records::add);
+
+            Assertions.assertEquals(1, records.size());
+            Assertions.assertEquals(file.toString(), records.getFirst().file());
+            Assertions.assertEquals("A::a@2-4@" + file, records.getFirst().location());
+        } catch (MetricEvaluationException | IOException e) {
+            Assertions.fail(e);
+        }
+    }
+
+    @Test
+    void runLizardFromBlobEvictedAfterFilter() {
+        String blobId = "cc33333333333333333333333333333333333333";
+        Path missing = Path.of("src/test/test-data/java/Missing.java");
+        LizardRecord cached = new LizardRecord(3, 1, 10, 0, 3, "A::a@2-4@", "", "A::a");
+        Map<String, List<LizardRecord>> entries = new HashMap<>(Map.of(blobId, List.of(cached)));
+
+        var runner = new ShardedLizardRunner(null, 1, Long.MAX_VALUE, ShardedLizardRunner.ShardListener.NONE,
+                new LizardResultCache() {
+                    @Override
+                    public Optional<List<LizardRecord>> get(String language, String id) {
+                        return Optional.ofNullable(entries.get(id));
+                    }
+
+                    @Override
+                    public void put(String language, String id, List<LizardRecord> records) {
+                        Assertions.fail("Cached blob must not be analyzed again");
+                    }
+                });
+
+        try {
+            ShardedLizardRunner.CachedBlobs cachedBlobs = runner.cachedBlobs("java");
+            // The file is not written, since its results are cached
+            Assertions.assertFalse(cachedBlobs.test(blobId));
+            entries.clear();
+
+            // Results seen by the filter are served although the entry is gone and the file was never written
+            List<LizardRecord> records = new ArrayList<>();
+            runner.runLizard("java", List.of(missing), Map.of(missing, blobId), cachedBlobs, records::add);
+
+            Assertions.assertEquals(1, records.size());
+            Assertions.assertEquals(missing.toString(), records.getFirst().file());
+        } catch (MetricEvaluationException e) {
+            Assertions.fail(e);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package ru.itmo.backend.service;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.itmo.backend.dto.response.commit.CommitDTO;
+import ru.itmo.backend.dto.response.commit.PageResponse;
+import ru.itmo.backend.entity.GitProjectEntity;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GitCommitServiceTest {
+
+    @TempDir
+    Path repoDir;
+
+    private GitProjectEntity project;
+    private GitCommitService service;
+    private final List<RevCommit> commits = new ArrayList<>();
+
+    @BeforeEach
+    void setup() throws Exception {
+        try (Git git = Git.init().setDirectory(repoDir.toFile()).setInitialBranch("main").call()) {
+            for (int i = 0; i < 5; i++) {
+                Files.writeString(repoDir.resolve("file.txt"), "content " + i);
+                git.add().addFilepattern("file.txt").call();
+                commits.add(git.commit().setMessage("commit " + i).setSign(false).call());
+            }
+        }
+
+        project = new GitProjectEntity();
+        project.setId(1L);
+        project.setLocalPath(repoDir.toString());
+        service = new GitCommitService(new CommitHistoryIndex(4));
+    }
+
+    @Test
+    void testListCommits_PagesOldestFirst() throws Exception {
+        PageResponse<CommitDTO> first = service.listCommits(project, "main", 0, 2);
+        PageResponse<CommitDTO> last = service.listCommits(project, "main", 2, 2);
+
+        assertEquals(5, first.total());
+        assertEquals(List.of(commits.get(0).getName(), commits.get(1).getName()),
+                first.items().stream().map(CommitDTO::sha).toList());
+        assertEquals(5, first.items().getFirst().number());
+        assertEquals("commit 0", first.items().getFirst().message());
+
+        assertEquals(1, last.items().size());
+        assertEquals(commits.get(4).getName(), last.items().getFirst().sha());
+        assertEquals(1, last.items().getFirst().number());
+    }
+
+    @Test
+    void testGetCommit_FindsCommitOfBranch() throws Exception {
+        Optional<CommitDTO> commit = service.getCommit(project, "main", commits.get(3).getName());
+
+        assertTrue(commit.isPresent());
+        assertEquals("commit 3", commit.get().message());
+        assertEquals(2, commit.get().number());
+
+        assertTrue(service.getCommit(project, "main", "0".repeat(40)).isEmpty());
+        assertTrue(service.getCommit(project, "main", "abc").isEmpty());
+    }
+
+    @Test
+    void testListCommits_SeesNewCommitsOnMovedBranch() throws Exception {
+        assertEquals(5, service.listCommits(project, "main", 0, 10).total());
+
+        try (Git git = Git.open(repoDir.toFile())) {
+            Files.writeString(repoDir.resolve("file.txt"), "content 5");
+            git.add().addFilepattern("file.txt").call();
+            git.commit().setMessage("commit 5").setSign(false).call();
+        }
+
+        assertEquals(6, service.listCommits(project, "main", 0, 10).total());
+    }
+
+    @Test
+    void testGetBranchTip_FollowsMovedBranch() throws Exception {
+        assertEquals(commits.getLast().getName(), service.getBranchTip(project, "main"));
+
+        RevCommit next;
+        try (Git git = Git.open(repoDir.toFile())) {
+            Files.writeString(repoDir.resolve("file.txt"), "content 5");
+            git.add().addFilepattern("file.txt").call();
+            next = git.commit().setMessage("commit 5").setSign(false).call();
+        }
+
+        assertEquals(next.getName(), service.getBranchTip(project, "main"));
+        assertThrows(IllegalArgumentException.class, () -> service.getBranchTip(project, "missing"));
+    }
+
+    @Test
+    void testSampleCommits_StridesBackFromTip() throws Exception {
+        List<CommitDTO> sampled = service.sampleCommits(project, "main", 2, 10);
+
+        assertEquals(List.of(commits.get(0).getName(), commits.get(2).getName(), commits.get(4).getName()),
+                sampled.stream().map(CommitDTO::sha).toList());
+        assertEquals(1, sampled.getLast().number());
+
+        List<CommitDTO> limited = service.sampleCommits(project, "main", 1, 2);
+        assertEquals(List.of(commits.get(3).getName(), commits.get(4).getName()),
+                limited.stream().map(CommitDTO::sha).toList());
+    }
+}
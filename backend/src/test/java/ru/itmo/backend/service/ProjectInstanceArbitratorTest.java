@@ -2,11 +2,18 @@ package ru.itmo.backend.service;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import ru.itmo.backend.config.metrics.MetricsService;
 import ru.itmo.backend.entity.GitProjectEntity;
 import ru.itmo.backend.entity.ProjectInstanceEntity;
 import ru.itmo.backend.repo.ProjectInstanceRepository;
+import ru.itmo.backend.service.downloader.ProjectInstanceProvisioner;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -14,12 +21,19 @@ import static org.mockito.Mockito.*;
 public class ProjectInstanceArbitratorTest {
 
     private ProjectInstanceRepository instanceRepository;
+    private ProjectInstanceProvisioner provisioner;
     private ProjectInstanceArbitrator arbitrator;
 
     @BeforeEach
     void setup() {
         instanceRepository = mock(ProjectInstanceRepository.class);
-        arbitrator = new ProjectInstanceArbitrator(instanceRepository);
+        provisioner = mock(ProjectInstanceProvisioner.class);
+        when(provisioner.getMaxInstances()).thenReturn(1);
+        when(provisioner.getMinInstances()).thenReturn(1);
+        when(provisioner.getIdleTimeout()).thenReturn(Duration.ofMinutes(30));
+        arbitrator = new ProjectInstanceArbitrator(instanceRepository, mock(MetricsService.class), provisioner, 1);
+        when(instanceRepository.save(any(ProjectInstanceEntity.class)))
+                .thenAnswer(i -> i.getArgument(0));
     }
 
     private GitProjectEntity createMockProject() {
@@ -28,48 +42,69 @@ public class ProjectInstanceArbitratorTest {
         return project;
     }
 
-    @Test
-    void testAcquireInstance_Success() throws InterruptedException {
-        Long projectId = 1L;
+    private ProjectInstanceEntity createInstance(Long id, boolean busy) {
         ProjectInstanceEntity instance = new ProjectInstanceEntity();
-        instance.setId(10L);
-        instance.setBusy(false);
+        instance.setId(id);
+        instance.setBusy(busy);
         instance.setProject(createMockProject());
+        when(instanceRepository.findById(id)).thenReturn(Optional.of(instance));
+        return instance;
+    }
 
-        when(instanceRepository.findFirstAvailableByProjectId(projectId))
-                .thenReturn(Optional.of(instance));
-        when(instanceRepository.save(any(ProjectInstanceEntity.class)))
-                .thenAnswer(i -> i.getArgument(0));
+    @Test
+    void testAcquireInstance_Success() throws InterruptedException {
+        Long projectId = 1L;
+        ProjectInstanceEntity instance = createInstance(10L, false);
+        when(instanceRepository.findByProjectId(projectId)).thenReturn(List.of(instance));
 
         ProjectInstanceEntity acquired = arbitrator.acquireInstance(projectId);
 
         assertNotNull(acquired);
         assertTrue(acquired.isBusy());
         assertEquals(10L, acquired.getId());
-        verify(instanceRepository).findFirstAvailableByProjectId(projectId);
+        verify(instanceRepository).findByProjectId(projectId);
         verify(instanceRepository).save(instance);
     }
 
     @Test
-    void testAcquireInstance_RetriesAndFails() {
+    void testAcquireInstance_TimesOutWhenAllBusy() throws InterruptedException {
         Long projectId = 1L;
-        when(instanceRepository.findFirstAvailableByProjectId(projectId))
-                .thenReturn(Optional.empty());
+        ProjectInstanceEntity instance = createInstance(10L, false);
+        when(instanceRepository.findByProjectId(projectId)).thenReturn(List.of(instance));
+
+        arbitrator.acquireInstance(projectId);
 
         assertThrows(RuntimeException.class, () -> arbitrator.acquireInstance(projectId));
     }
 
+    @Test
+    void testReleaseInstance_HandsOffToWaitingRequest() throws Exception {
+        Long projectId = 1L;
+        ProjectInstanceEntity instance = createInstance(10L, false);
+        when(instanceRepository.findByProjectId(projectId)).thenReturn(List.of(instance));
+
+        arbitrator.acquireInstance(projectId);
+        CompletableFuture<ProjectInstanceEntity> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return arbitrator.acquireInstance(projectId);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        Thread.sleep(100);
+        assertFalse(waiting.isDone());
+
+        arbitrator.releaseInstance(10L);
+
+        assertEquals(10L, waiting.get(500, TimeUnit.MILLISECONDS).getId());
+        assertTrue(instance.isBusy());
+    }
+
     @Test
     void testReleaseInstance() {
         Long instanceId = 10L;
-        ProjectInstanceEntity instance = new ProjectInstanceEntity();
-        instance.setId(instanceId);
-        instance.setBusy(true);
-        instance.setProject(createMockProject());
-
-        when(instanceRepository.findById(instanceId)).thenReturn(Optional.of(instance));
-        when(instanceRepository.save(any(ProjectInstanceEntity.class)))
-                .thenAnswer(i -> i.getArgument(0));
+        ProjectInstanceEntity instance = createInstance(instanceId, true);
 
         arbitrator.releaseInstance(instanceId);
 
@@ -77,5 +112,40 @@ public class ProjectInstanceArbitratorTest {
         assertNotNull(instance.getLastUsedAt());
         verify(instanceRepository).save(instance);
     }
-}
 
+    @Test
+    void testAcquireInstance_ProvisionsInstanceWhenAllBusy() throws InterruptedException {
+        Long projectId = 1L;
+        ProjectInstanceEntity instance = createInstance(10L, false);
+        ProjectInstanceEntity provisioned = createInstance(11L, false);
+        when(instanceRepository.findByProjectId(projectId)).thenReturn(List.of(instance));
+        when(provisioner.getMaxInstances()).thenReturn(2);
+        when(provisioner.provision(projectId)).thenReturn(CompletableFuture.completedFuture(provisioned));
+
+        arbitrator.acquireInstance(projectId);
+        ProjectInstanceEntity acquired = arbitrator.acquireInstance(projectId);
+
+        assertEquals(11L, acquired.getId());
+        verify(provisioner).provision(projectId);
+    }
+
+    @Test
+    void testShrinkIdlePools_RemovesIdleInstancesAboveMinimum() throws InterruptedException {
+        Long projectId = 1L;
+        ProjectInstanceEntity recent = createInstance(10L, false);
+        recent.setLastUsedAt(LocalDateTime.now());
+        ProjectInstanceEntity idle = createInstance(11L, false);
+        idle.setLastUsedAt(LocalDateTime.now().minusHours(2));
+        when(instanceRepository.findByProjectId(projectId)).thenReturn(List.of(idle, recent));
+        when(provisioner.getMaxInstances()).thenReturn(2);
+
+        arbitrator.acquireInstance(projectId);
+        arbitrator.releaseInstance(11L);
+        idle.setLastUsedAt(LocalDateTime.now().minusHours(2));
+
+        arbitrator.shrinkIdlePools();
+
+        verify(provisioner).retire(idle);
+        verify(provisioner, never()).retire(recent);
+    }
+}
@@ -0,0 +1,106 @@
+package ru.itmo.backend.service.analysis;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.itmo.backend.dto.response.analysis.CommitMetricsDTO;
+import ru.itmo.backend.dto.response.commit.CommitDTO;
+import ru.itmo.backend.entity.GitProjectEntity;
+import ru.itmo.backend.service.downloader.ProjectInstanceProvisioner;
+import ru.itmo.backend.service.jobs.Job;
+import ru.itmo.backend.service.jobs.JobService;
+import ru.itmo.backend.service.jobs.JobStatus;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+public class AnalysisJobServiceTest {
+
+    private CodeAnalysisService codeAnalysisService;
+    private JobService jobService;
+    private AnalysisJobService analysisJobService;
+    private GitProjectEntity project;
+    private CommitDTO commit;
+
+    @BeforeEach
+    void setup() {
+        codeAnalysisService = mock(CodeAnalysisService.class);
+        ProjectInstanceProvisioner provisioner = mock(ProjectInstanceProvisioner.class);
+        when(provisioner.getMaxInstances()).thenReturn(2);
+        jobService = new JobService(1, 60);
+        analysisJobService = new AnalysisJobService(codeAnalysisService, jobService, provisioner);
+
+        project = new GitProjectEntity();
+        project.setId(1L);
+        project.setLanguageCode("java");
+        commit = new CommitDTO("abc", "message", "author", 0L, 1);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        analysisJobService.close();
+        jobService.close();
+    }
+
+    @Test
+    void testSubmit_SharesRunningAnalysisOfSameCommit() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CommitMetricsDTO result = new CommitMetricsDTO(commit, null);
+        when(codeAnalysisService.getCommitMetrics(any(), any(), anyList())).thenAnswer(i -> {
+            release.await(1, TimeUnit.SECONDS);
+            return result;
+        });
+
+        Job<CommitMetricsDTO> first = analysisJobService.submit(project, commit, List.of("CCN", "NLOC"));
+        Job<CommitMetricsDTO> second = analysisJobService.submit(project, commit, List.of("NLOC", "CCN"));
+        assertSame(first, second);
+
+        release.countDown();
+        awaitFinished(first);
+
+        assertEquals(JobStatus.SUCCEEDED, first.getStatus());
+        assertSame(result, first.getResult());
+        verify(codeAnalysisService, times(1)).getCommitMetrics(any(), any(), anyList());
+
+        Job<CommitMetricsDTO> third = analysisJobService.submit(project, commit, List.of("CCN", "NLOC"));
+        assertNotSame(first, third);
+        awaitFinished(third);
+    }
+
+    @Test
+    void testEvictProject_LetsSubmittedAnalysisFinish() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CommitMetricsDTO result = new CommitMetricsDTO(commit, null);
+        when(codeAnalysisService.getCommitMetrics(any(), any(), anyList())).thenAnswer(i -> {
+            release.await(1, TimeUnit.SECONDS);
+            return result;
+        });
+
+        Job<CommitMetricsDTO> running = analysisJobService.submit(project, commit, List.of("NLOC"));
+        analysisJobService.evictProject(project.getId());
+        release.countDown();
+        awaitFinished(running);
+        assertSame(result, running.getResult());
+
+        // A later analysis of the project gets a new executor
+        Job<CommitMetricsDTO> next = analysisJobService.submit(project, commit, List.of("CCN"));
+        awaitFinished(next);
+        assertEquals(JobStatus.SUCCEEDED, next.getStatus());
+    }
+
+    private static void awaitFinished(Job<?> job) throws InterruptedException {
+        CountDownLatch finished = new CountDownLatch(1);
+        job.subscribe(state -> {
+            if (state.status().isFinished()) {
+                finished.countDown();
+            }
+        });
+        assertTrue(finished.await(2, TimeUnit.SECONDS));
+    }
+}
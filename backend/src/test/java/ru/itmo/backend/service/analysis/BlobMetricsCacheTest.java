@@ -0,0 +1,61 @@
+package ru.itmo.backend.service.analysis;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.itmo.backend.config.metrics.MetricsService;
+import ru.itmo.backend.evaluator.lizard.LizardRecord;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class BlobMetricsCacheTest {
+
+    private static final String BLOB_A = "aa11111111111111111111111111111111111111";
+    private static final String BLOB_B = "bb22222222222222222222222222222222222222";
+
+    @TempDir
+    Path cacheDir;
+
+    private AnalysisProperties properties;
+
+    @BeforeEach
+    void setup() {
+        properties = new AnalysisProperties();
+        properties.getBlobCache().setPath(cacheDir.toString());
+    }
+
+    @Test
+    void testPutGet_RoundTripsBackslashesAndQuotesOnDisk() {
+        String fullName = "void Parser::skip(char c = '\\\"', const char* s = \"a\\\\b\")";
+        LizardRecord record = new LizardRecord(3, 2, 20, 2, 5, "skip@10-14@src/parser.cpp", "src/parser.cpp", fullName);
+
+        new BlobMetricsCache(properties, mock(MetricsService.class)).put("cpp", BLOB_A, List.of(record));
+        // A new instance reads the entry from disk
+        Optional<List<LizardRecord>> stored = new BlobMetricsCache(properties, mock(MetricsService.class)).get("cpp", BLOB_A);
+
+        assertTrue(stored.isPresent());
+        assertEquals(List.of(record.relocate("")), stored.get());
+        assertEquals(fullName, stored.get().getFirst().fullName());
+    }
+
+    @Test
+    void testPut_EvictsLeastRecentlyUsedOverMaxSize() {
+        properties.getBlobCache().setMaxSizeMb(1);
+        BlobMetricsCache cache = new BlobMetricsCache(properties, mock(MetricsService.class));
+        // Each entry takes a bit more than half of the limit
+        String longName = "f".repeat(600 * 1024);
+        LizardRecord record = new LizardRecord(1, 1, 1, 0, 1, "f@1-1@F.java", "F.java", longName);
+
+        cache.put("java", BLOB_A, List.of(record));
+        cache.put("java", BLOB_B, List.of(record));
+
+        assertTrue(cache.get("java", BLOB_A).isEmpty());
+        assertTrue(cache.get("java", BLOB_B).isPresent());
+        assertFalse(cacheDir.resolve("java").resolve("aa").resolve(BLOB_A + ".csv").toFile().exists());
+    }
+}
@@ -1,16 +1,37 @@
 package ru.itmo.backend.service.analysis;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.eclipse.jgit.diff.DiffEntry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import ru.itmo.backend.config.metrics.MetricsService;
+import ru.itmo.backend.dto.response.analysis.*;
+import ru.itmo.backend.dto.response.commit.CommitDTO;
+import ru.itmo.backend.dto.response.reference.MetricDTO;
+import ru.itmo.backend.entity.GitProjectEntity;
 import ru.itmo.backend.entity.ProjectInstanceEntity;
+import ru.itmo.backend.evaluator.MetricEvaluators;
+import ru.itmo.backend.evaluator.lizard.ShardedLizardRunner;
+import ru.itmo.backend.evaluator.model.ClassMetric;
+import ru.itmo.backend.evaluator.model.MethodMetric;
+import ru.itmo.backend.evaluator.model.NumericMetric;
 import ru.itmo.backend.service.ProjectInstanceArbitrator;
 import ru.itmo.backend.service.downloader.GitClient;
 import ru.itmo.backend.service.reference.ReferenceProperties;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -20,6 +41,8 @@ public class CodeAnalysisServiceTest {
     private ProjectInstanceArbitrator arbitrator;
     private GitClient gitClient;
     private ReferenceProperties props;
+    private CommitMetricsCache metricsCache;
+    private MetricsService metricsService;
     private CodeAnalysisService service;
     private Path tempRepo;
 
@@ -28,7 +51,10 @@ public class CodeAnalysisServiceTest {
         arbitrator = mock(ProjectInstanceArbitrator.class);
         gitClient = mock(GitClient.class);
         props = mock(ReferenceProperties.class);
-        service = new CodeAnalysisService(arbitrator, gitClient, props);
+        metricsCache = mock(CommitMetricsCache.class);
+        metricsService = mock(MetricsService.class);
+        service = new CodeAnalysisService(arbitrator, gitClient, props, metricsCache, new AnalysisProperties(), metricsService,
+                ShardedLizardRunner.sequential());
         tempRepo = Files.createTempDirectory("test-repo");
     }
 
@@ -69,20 +95,396 @@ public class CodeAnalysisServiceTest {
     }
 
     @Test
-    void testAnalyzeDiff_AcquiresAndReleasesInstance() throws Exception {
-        Long projectId = 1L;
-        String oldSha = "abc";
-        String newSha = "def";
-        ProjectInstanceEntity instance = new ProjectInstanceEntity();
-        instance.setId(10L);
-        instance.setLocalPath(tempRepo.toString());
+    void testAnalyzeDiff_EvaluatesOnlyChangedFilesWithoutInstance() throws Exception {
+        GitProjectEntity project = new GitProjectEntity();
+        project.setId(1L);
+        project.setLocalPath(tempRepo.toString());
+        String oldSha = "a".repeat(40);
+        String newSha = "b".repeat(40);
 
-        when(arbitrator.acquireInstance(projectId)).thenReturn(instance);
+        DiffEntry change = mock(DiffEntry.class);
+        when(change.getChangeType()).thenReturn(DiffEntry.ChangeType.MODIFY);
+        when(change.getOldPath()).thenReturn("src/A.java");
+        when(change.getNewPath()).thenReturn("src/A.java");
+        when(gitClient.diffCommits(tempRepo.toFile(), oldSha, newSha)).thenReturn(List.of(change));
 
-        Map<String, Object> result = service.analyzeDiff(projectId, oldSha, newSha);
+        ClassMetric stored = new ClassMetric("p.A");
+        stored.methods().put("changed", method("changed", "src/A.java", 10, 2));
+        stored.methods().put("untouched", method("untouched", "src/B.java", 5, 1));
+        when(metricsCache.load(project, oldSha, MetricEvaluators.Language.JAVA)).thenReturn(Optional.of(Map.of("p.A", stored)));
 
-        assertNotNull(result);
-        verify(arbitrator).acquireInstance(projectId);
-        verify(arbitrator).releaseInstance(10L);
+        CommitDiffDTO diff = service.analyzeDiff(project, oldSha, newSha);
+
+        // The newer revision is evaluated from the changed file only
+        verify(gitClient).materializeTree(eq(tempRepo.toFile()), eq(newSha),
+                argThat(filter -> filter.test("src/A.java") && !filter.test("src/B.java")), any(), any());
+        verify(gitClient, never()).materializeTree(any(), eq(oldSha), any(), any(), any());
+        verify(arbitrator, never()).acquireInstance(any());
+
+        assertEquals(1, diff.changedFiles());
+        assertEquals(1, diff.removedMethods());
+        assertEquals("changed", diff.methods().getFirst().methodName());
+        assertEquals(-10, diff.totalDelta().get("NLOC"));
+    }
+
+    @Test
+    void testWriteCommitMetrics_MatchesDtoSerialization() throws Exception {
+        GitProjectEntity project = new GitProjectEntity();
+        project.setId(1L);
+        project.setLanguageCode("java");
+        CommitDTO commit = new CommitDTO("abc1234", "message", "author", 0L, 1);
+
+        mockJavaMetrics();
+
+        ClassMetric a = new ClassMetric("org.app.core.A");
+        a.methods().put("run", method("run", "src/A.java", 10, 2));
+        ClassMetric b = new ClassMetric("org.app.util.B");
+        b.methods().put("help", method("help", "src/B.java", 3, 1));
+        b.methods().put("assist", method("assist", "src/B.java", 4, 1));
+        ClassMetric c = new ClassMetric("org.app.util.deep.C");
+        Map<String, ClassMetric> classMetrics = Map.of(a.name(), a, b.name(), b, c.name(), c);
+        when(metricsCache.get(project, commit.sha(), MetricEvaluators.Language.JAVA)).thenReturn(Optional.of(classMetrics));
+
+        List<String> metrics = List.of("NLOC", "FILE");
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode expected = mapper.valueToTree(service.getCommitMetrics(project, commit, metrics));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.writeCommitMetrics(project, commit, classMetrics, metrics, out);
+
+        assertEquals(expected, mapper.readTree(out.toByteArray()));
+        assertEquals("org.app", expected.get("root").get("name").asText());
+    }
+
+    @Test
+    void testGetCommitMetricsColumnar_EncodesTreeAndColumns() throws Exception {
+        GitProjectEntity project = new GitProjectEntity();
+        project.setId(1L);
+        project.setLanguageCode("java");
+        CommitDTO commit = new CommitDTO("abc1234", "message", "author", 0L, 1);
+
+        mockJavaMetrics();
+
+        ClassMetric a = new ClassMetric("org.app.core.A");
+        a.methods().put("run", method("run", "src/A.java", 10, 2));
+        ClassMetric b = new ClassMetric("org.app.util.B");
+        b.methods().put("help", method("help", "src/B.java", 3, 1));
+        Map<String, ClassMetric> classMetrics = Map.of(a.name(), a, b.name(), b);
+        when(metricsCache.get(project, commit.sha(), MetricEvaluators.Language.JAVA)).thenReturn(Optional.of(classMetrics));
+
+        ColumnarCommitMetricsDTO result = service.getCommitMetricsColumnar(project, commit, List.of("NLOC", "FILE"));
+
+        // org.app, core, A, run, util, B, help in some package order
+        assertEquals(7, result.nodeTypes().length);
+        assertEquals(-1, result.parents()[0]);
+        assertEquals("org.app", result.strings().get(result.names()[0]));
+        assertEquals(2, result.methods().length);
+        ColumnarCommitMetricsDTO.Column nlocColumn = result.columns().get(0);
+        ColumnarCommitMetricsDTO.Column fileColumn = result.columns().get(1);
+        for (int i = 0; i < result.methods().length; i++) {
+            int node = result.methods()[i];
+            assertEquals(ColumnarCommitMetricsDTO.METHOD, result.nodeTypes()[node]);
+            int classNode = result.parents()[node];
+            assertEquals(ColumnarCommitMetricsDTO.CLASS, result.nodeTypes()[classNode]);
+            String className = result.strings().get(result.names()[classNode]);
+            ClassMetric classMetric = className.equals("A") ? a : b;
+            MethodMetric method = classMetric.methods().get(result.strings().get(result.names()[node]));
+            assertEquals(method.value(NumericMetric.NLOC), nlocColumn.values()[i]);
+            assertEquals(method.file(), result.strings().get(fileColumn.values()[i]));
+        }
+    }
+
+    @Test
+    void testGetCommitMetrics_PrunesByDepthAndMinNloc() throws Exception {
+        GitProjectEntity project = new GitProjectEntity();
+        project.setId(1L);
+        project.setLanguageCode("java");
+        CommitDTO commit = new CommitDTO("abc1234", "message", "author", 0L, 1);
+        mockJavaMetrics();
+
+        ClassMetric a = new ClassMetric("org.app.core.A");
+        a.methods().put("run", method("run", "src/A.java", 10, 2));
+        ClassMetric b = new ClassMetric("org.app.util.B");
+        b.methods().put("help", method("help", "src/B.java", 3, 1));
+        b.methods().put("assist", method("assist", "src/B.java", 4, 5));
+        ClassMetric c = new ClassMetric("org.app.util.deep.C");
+        c.methods().put("tiny", method("tiny", "src/C.java", 1, 1));
+        Map<String, ClassMetric> classMetrics = Map.of(a.name(), a, b.name(), b, c.name(), c);
+        when(metricsCache.get(project, commit.sha(), MetricEvaluators.Language.JAVA)).thenReturn(Optional.of(classMetrics));
+
+        CommitMetricsDTO result = service.getCommitMetrics(project, commit, List.of("NLOC"), 2, 5);
+
+        PackageMetricsNodeDTO root = (PackageMetricsNodeDTO) result.root();
+        assertEquals("org.app", root.name());
+        assertEquals(new MetricsSummaryDTO(4, 18, 10, 4.5, 9, 5, 2.25), root.summary());
+
+        PackageMetricsNodeDTO util = (PackageMetricsNodeDTO) root.items().stream()
+                .filter(node -> node.getName().equals("util")).findFirst().orElseThrow();
+        ClassMetricsNodeDTO classB = (ClassMetricsNodeDTO) util.items().stream()
+                .filter(node -> node.getName().equals("B")).findFirst().orElseThrow();
+        assertNull(classB.items());
+        assertEquals(7, classB.summary().totalNloc());
+        OtherMetricsNodeDTO other = (OtherMetricsNodeDTO) util.items().stream()
+                .filter(node -> node instanceof OtherMetricsNodeDTO).findFirst().orElseThrow();
+        assertEquals(1, other.nodeCount());
+        assertEquals(1, other.summary().totalNloc());
+        assertEquals(2, util.items().size());
+
+        assertThrows(IllegalArgumentException.class, () -> service.getCommitMetrics(project, commit, List.of("NLOC"), -1, null));
+    }
+
+    @Test
+    void testGetSubtreeMetrics_ReturnsPackageOrClass() throws Exception {
+        GitProjectEntity project = new GitProjectEntity();
+        project.setId(1L);
+        project.setLanguageCode("java");
+        CommitDTO commit = new CommitDTO("abc1234", "message", "author", 0L, 1);
+        mockJavaMetrics();
+
+        ClassMetric a = new ClassMetric("org.app.core.A");
+        a.methods().put("run", method("run", "src/A.java", 10, 2));
+        ClassMetric b = new ClassMetric("org.app.util.B");
+        b.methods().put("help", method("help", "src/B.java", 3, 1));
+        ClassMetric c = new ClassMetric("org.app.util.deep.C");
+        c.methods().put("tiny", method("tiny", "src/C.java", 1, 1));
+        Map<String, ClassMetric> classMetrics = Map.of(a.name(), a, b.name(), b, c.name(), c);
+        when(metricsCache.get(project, commit.sha(), MetricEvaluators.Language.JAVA)).thenReturn(Optional.of(classMetrics));
+
+        PackageMetricsNodeDTO util = (PackageMetricsNodeDTO) service.getSubtreeMetrics(project, commit, List.of("NLOC"),
+                "org.app.util", null, null, null).root();
+        assertEquals("org.app.util", util.name());
+        assertEquals("org.app.util", util.path());
+        assertEquals(2, util.summary().methodCount());
+        assertEquals(2, util.items().size());
+
+        ClassMetricsNodeDTO classB = (ClassMetricsNodeDTO) service.getSubtreeMetrics(project, commit, List.of("NLOC"),
+                "org.app.util", "B", null, null).root();
+        assertEquals("help", classB.items().getFirst().name());
+
+        assertThrows(IllegalArgumentException.class, () ->
+                service.getSubtreeMetrics(project, commit, List.of("NLOC"), "org.app.ut", null, null, null));
+        assertThrows(IllegalArgumentException.class, () ->
+                service.getSubtreeMetrics(project, commit, List.of("NLOC"), "org.app", "B", null, null));
+        verify(gitClient, never()).materializeTree(any(File.class), any(), any(), any(), any());
+    }
+
+    @Test
+    void testGetSubtreeMetrics_DrillsIntoCollapsedPackages() throws Exception {
+        GitProjectEntity project = new GitProjectEntity();
+        project.setId(1L);
+        project.setLanguageCode("java");
+        CommitDTO commit = new CommitDTO("abc1234", "message", "author", 0L, 1);
+        mockJavaMetrics();
+
+        ClassMetric a = new ClassMetric("org.app.core.A");
+        a.methods().put("run", method("run", "src/A.java", 10, 2));
+        ClassMetric b = new ClassMetric("org.app.util.deep.B");
+        b.methods().put("help", method("help", "src/B.java", 3, 1));
+        ClassMetric c = new ClassMetric("org.app.util.deep.inner.C");
+        c.methods().put("tiny", method("tiny", "src/C.java", 1, 1));
+        Map<String, ClassMetric> classMetrics = Map.of(a.name(), a, b.name(), b, c.name(), c);
+        when(metricsCache.get(project, commit.sha(), MetricEvaluators.Language.JAVA)).thenReturn(Optional.of(classMetrics));
+
+        PackageMetricsNodeDTO root = (PackageMetricsNodeDTO) service.getCommitMetrics(project, commit, List.of("NLOC"), 1, null).root();
+        PackageMetricsNodeDTO util = root.items().stream()
+                .map(PackageMetricsNodeDTO.class::cast)
+                .filter(p -> p.name().equals("util.deep"))
+                .findFirst()
+                .orElseThrow();
+        assertEquals("org.app.util.deep", util.path());
+        assertNull(util.items());
+
+        // A collapsed chain is requested by the full path of the node, or by any package of the chain
+        for (String path : List.of(util.path(), "org.app.util")) {
+            PackageMetricsNodeDTO subtree = (PackageMetricsNodeDTO) service.getSubtreeMetrics(project, commit, List.of("NLOC"),
+                    path, null, null, null).root();
+            assertEquals("org.app.util.deep", subtree.name());
+            assertEquals("org.app.util.deep", subtree.path());
+            assertEquals(2, subtree.summary().methodCount());
+            PackageMetricsNodeDTO inner = (PackageMetricsNodeDTO) subtree.items().getFirst();
+            assertEquals("inner", inner.name());
+            assertEquals("org.app.util.deep.inner", inner.path());
+        }
+        assertThrows(IllegalArgumentException.class, () ->
+                service.getSubtreeMetrics(project, commit, List.of("NLOC"), "util.deep", null, null, null));
+    }
+
+    @Test
+    void testDiffMethods_ReportsDeltasOfChangedMethods() {
+        ClassMetric before = new ClassMetric("p.A");
+        before.methods().put("kept", method("kept", "A.java", 10, 2));
+        before.methods().put("same", method("same", "A.java", 3, 1));
+        before.methods().put("gone", method("gone", "A.java", 4, 1));
+        ClassMetric after = new ClassMetric("p.A");
+        after.methods().put("kept", method("kept", "A.java", 15, 4));
+        after.methods().put("same", method("same", "A.java", 3, 1));
+        after.methods().put("fresh", method("fresh", "A.java", 6, 3));
+
+        CommitDiffDTO diff = CodeAnalysisService.diffMethods("old", "new", 1, Map.of("p.A", before), Map.of("p.A", after));
+
+        assertEquals(1, diff.addedMethods());
+        assertEquals(1, diff.removedMethods());
+        assertEquals(1, diff.modifiedMethods());
+        assertEquals(List.of("fresh", "gone", "kept"), diff.methods().stream().map(MethodDiffDTO::methodName).toList());
+
+        MethodDiffDTO kept = diff.methods().get(2);
+        assertEquals(MethodDiffDTO.Status.MODIFIED, kept.status());
+        assertEquals(5, kept.delta().get("NLOC"));
+        assertEquals(2, kept.delta().get("CCN"));
+        assertNull(diff.methods().get(0).before());
+        assertNull(diff.methods().get(1).after());
+        assertEquals(5 + 6 - 4, diff.totalDelta().get("NLOC"));
+    }
+
+    @Test
+    void testGetCommitMetrics_CacheHitSkipsInstance() throws Exception {
+        GitProjectEntity project = new GitProjectEntity();
+        project.setId(1L);
+        CommitDTO commit = new CommitDTO("abc1234", "message", "author", 0L, 1);
+        mockJavaMetrics();
+
+        when(metricsCache.get(project, commit.sha(), MetricEvaluators.Language.JAVA))
+                .thenReturn(Optional.of(Map.of()));
+
+        CommitMetricsDTO result = service.getCommitMetrics(project, commit, List.of("NLOC"));
+
+        assertEquals(commit, result.commit());
+        verify(arbitrator, never()).acquireInstance(any());
+        verify(gitClient, never()).checkout(any(File.class), any());
+    }
+
+    @Test
+    void testGetCommitMetrics_UsesResultStoredBeforeEvaluationStarts() throws Exception {
+        GitProjectEntity project = new GitProjectEntity();
+        project.setId(1L);
+        project.setLocalPath(tempRepo.toString());
+        CommitDTO commit = new CommitDTO("abc1234", "message", "author", 0L, 1);
+        mockJavaMetrics();
+
+        // Another evaluation of the commit completes between the cache lookup and the in-flight registration
+        when(metricsCache.get(project, commit.sha(), MetricEvaluators.Language.JAVA)).thenReturn(Optional.empty());
+        when(metricsCache.load(project, commit.sha(), MetricEvaluators.Language.JAVA)).thenReturn(Optional.of(Map.of()));
+
+        CommitMetricsDTO result = service.getCommitMetrics(project, commit, List.of("NLOC"));
+
+        assertEquals(commit, result.commit());
+        verify(gitClient, never()).materializeTree(any(File.class), any(), any(), any(), any());
+        verify(metricsCache, never()).put(any(), any(), any(), any());
+        verify(metricsCache, times(1)).get(any(), any(), any());
+    }
+
+    @Test
+    void testGetCommitMetrics_ReadsObjectDatabaseWithoutInstance() throws Exception {
+        GitProjectEntity project = new GitProjectEntity();
+        project.setId(1L);
+        project.setLocalPath(tempRepo.toString());
+        CommitDTO commit = new CommitDTO("abc1234", "message", "author", 0L, 1);
+        mockJavaMetrics();
+
+        CommitMetricsDTO result = service.getCommitMetrics(project, commit, List.of("NLOC"));
+
+        assertEquals(commit, result.commit());
+        verify(gitClient).materializeTree(eq(tempRepo.toFile()), eq(commit.sha()), any(), any(), any());
+        verify(arbitrator, never()).acquireInstance(any());
+        verify(gitClient, never()).checkout(any(File.class), any());
+    }
+
+    @Test
+    void testGetCommitMetrics_RejectsUnknownMetricBeforeEvaluation() {
+        GitProjectEntity project = new GitProjectEntity();
+        project.setId(1L);
+        project.setLanguageCode("java");
+        CommitDTO commit = new CommitDTO("abc1234", "message", "author", 0L, 1);
+        mockJavaMetrics();
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () ->
+                service.getCommitMetrics(project, commit, List.of("NLOC", "NOPE")));
+
+        assertEquals("Unknown metric: NOPE", error.getMessage());
+        verifyNoInteractions(metricsCache);
+    }
+
+    @Test
+    void testGetCommitMetrics_CoalescesConcurrentRequests() throws Exception {
+        GitProjectEntity project = new GitProjectEntity();
+        project.setId(1L);
+        project.setLocalPath(tempRepo.toString());
+        CommitDTO commit = new CommitDTO("abc1234", "message", "author", 0L, 1);
+        mockJavaMetrics();
+
+        CountDownLatch evaluating = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(gitClient.materializeTree(any(File.class), eq(commit.sha()), any(), any(), any())).thenAnswer(i -> {
+            evaluating.countDown();
+            release.await(2, TimeUnit.SECONDS);
+            return Map.of();
+        });
+
+        CompletableFuture<CommitMetricsDTO> first = CompletableFuture.supplyAsync(() -> getCommitMetrics(project, commit));
+        assertTrue(evaluating.await(2, TimeUnit.SECONDS));
+        CompletableFuture<CommitMetricsDTO> second = CompletableFuture.supplyAsync(() -> getCommitMetrics(project, commit));
+
+        verify(metricsService, timeout(2000)).recordAnalysisCoalesced();
+        release.countDown();
+
+        assertEquals(commit, first.get(2, TimeUnit.SECONDS).commit());
+        assertEquals(commit, second.get(2, TimeUnit.SECONDS).commit());
+        verify(gitClient, times(1)).materializeTree(any(File.class), eq(commit.sha()), any(), any(), any());
+    }
+
+    private CommitMetricsDTO getCommitMetrics(GitProjectEntity project, CommitDTO commit) {
+        try {
+            return service.getCommitMetrics(project, commit, List.of("NLOC"));
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    @Test
+    void testMergeClassMetrics_ReplacesChangedFiles() {
+        ClassMetric a = new ClassMetric("p.A");
+        a.methods().put("kept", method("kept", "src/A.java", "https://github.com/o/r/blob/old/src/A.java#L1-L2"));
+        ClassMetric b = new ClassMetric("p.B");
+        b.methods().put("stale", method("stale", "src/B.java", null));
+        ClassMetric c = new ClassMetric("p.C");
+        c.methods().put("removed", method("removed", "src/C.java", null));
+
+        ClassMetric newB = new ClassMetric("p.B");
+        newB.methods().put("fresh", method("fresh", "src/B.java", null));
+
+        Map<String, ClassMetric> merged = CodeAnalysisService.mergeClassMetrics(
+                Map.of("p.A", a, "p.B", b, "p.C", c),
+                Set.of("src/B.java", "src/C.java"),
+                Map.of("p.B", newB),
+                "old", "new");
+
+        assertEquals(Set.of("p.A", "p.B"), merged.keySet());
+        assertEquals(Set.of("fresh"), merged.get("p.B").methods().keySet());
+        assertEquals("https://github.com/o/r/blob/new/src/A.java#L1-L2",
+                merged.get("p.A").methods().get("kept").githubLink());
+    }
+
+    private void mockJavaMetrics() {
+        ReferenceProperties.MetricConfig nloc = new ReferenceProperties.MetricConfig();
+        nloc.setId("NLOC");
+        nloc.setType(MetricDTO.MetricType.NUMERIC);
+        ReferenceProperties.MetricConfig file = new ReferenceProperties.MetricConfig();
+        file.setId("FILE");
+        file.setType(MetricDTO.MetricType.STRING);
+        ReferenceProperties.LanguageConfig java = new ReferenceProperties.LanguageConfig();
+        java.setLanguage("java");
+        java.setMetrics(List.of(nloc, file));
+        when(props.getLanguages()).thenReturn(List.of(java));
+    }
+
+    private static MethodMetric method(String name, String file, String link) {
+        return new MethodMetric(name, new int[NumericMetric.count()], name, file, file + "@1-2@" + name, link);
+    }
+
+    private static MethodMetric method(String name, String file, int nloc, int ccn) {
+        int[] values = new int[NumericMetric.count()];
+        values[NumericMetric.NLOC.ordinal()] = nloc;
+        values[NumericMetric.CCN.ordinal()] = ccn;
+        return new MethodMetric(name, values, name, file, file + "@1-2@" + name, null);
     }
 }
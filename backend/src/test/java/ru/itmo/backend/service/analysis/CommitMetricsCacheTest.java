@@ -0,0 +1,104 @@
+package ru.itmo.backend.service.analysis;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.itmo.backend.config.metrics.MetricsService;
+import ru.itmo.backend.entity.CommitMetricsEntity;
+import ru.itmo.backend.entity.GitProjectEntity;
+import ru.itmo.backend.evaluator.MetricEvaluators;
+import ru.itmo.backend.evaluator.model.ClassMetric;
+import ru.itmo.backend.repo.CommitMetricsRepository;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class CommitMetricsCacheTest {
+
+    private static final MetricEvaluators.Language JAVA = MetricEvaluators.Language.JAVA;
+
+    private CommitMetricsRepository repository;
+    private CommitMetricsCache cache;
+    private GitProjectEntity project;
+
+    @BeforeEach
+    void setup() {
+        repository = mock(CommitMetricsRepository.class);
+        cache = new CommitMetricsCache(repository, mock(MetricsService.class), 1);
+
+        project = new GitProjectEntity();
+        project.setId(1L);
+    }
+
+    @Test
+    void testLoad_KeepsRecentResultDecoded() {
+        stored("aaa");
+
+        Map<String, ClassMetric> first = cache.get(project, "aaa", JAVA).orElseThrow();
+        Map<String, ClassMetric> second = cache.get(project, "aaa", JAVA).orElseThrow();
+
+        assertSame(first, second);
+        assertTrue(first.containsKey("org.app.A"));
+        verify(repository, times(1)).findByProjectIdAndCommitShaAndLanguageCode(1L, "aaa", JAVA.name());
+    }
+
+    @Test
+    void testLoad_DropsLeastRecentlyUsedAndEvictedProjects() {
+        stored("aaa");
+        stored("bbb");
+
+        cache.load(project, "aaa", JAVA);
+        cache.load(project, "bbb", JAVA);
+        cache.load(project, "aaa", JAVA);
+        verify(repository, times(2)).findByProjectIdAndCommitShaAndLanguageCode(1L, "aaa", JAVA.name());
+
+        cache.evictProject(1L);
+        when(repository.findByProjectIdAndCommitShaAndLanguageCode(any(), any(), any())).thenReturn(Optional.empty());
+        assertTrue(cache.load(project, "aaa", JAVA).isEmpty());
+    }
+
+    @Test
+    void testLoad_ReturnsUnmodifiableResult() {
+        stored("aaa");
+
+        Map<String, ClassMetric> result = cache.load(project, "aaa", JAVA).orElseThrow();
+
+        assertThrows(UnsupportedOperationException.class, () -> result.remove("org.app.A"));
+        assertThrows(UnsupportedOperationException.class, () -> result.get("org.app.A").methods().clear());
+    }
+
+    @Test
+    void testPut_KeepsCopyDecodedOnlyAfterCommit() {
+        ClassMetric classMetric = new ClassMetric("org.app.A");
+        Map<String, ClassMetric> classMetrics = new HashMap<>(Map.of(classMetric.name(), classMetric));
+        when(repository.findByProjectIdAndCommitShaAndLanguageCode(any(), any(), any())).thenReturn(Optional.empty());
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cache.put(project, "aaa", JAVA, classMetrics);
+            assertTrue(cache.load(project, "aaa", JAVA).isEmpty());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        classMetrics.put("org.app.B", new ClassMetric("org.app.B"));
+
+        Map<String, ClassMetric> cached = cache.load(project, "aaa", JAVA).orElseThrow();
+        assertEquals(Map.of("org.app.A", classMetric), cached);
+        verify(repository).save(any(CommitMetricsEntity.class));
+    }
+
+    private void stored(String commitSha) {
+        CommitMetricsEntity entity = new CommitMetricsEntity();
+        entity.setCommitSha(commitSha);
+        entity.setPayload("{\"org.app.A\":{\"name\":\"org.app.A\",\"packageName\":\"org.app\",\"simpleName\":\"A\",\"methods\":{}}}");
+        when(repository.findByProjectIdAndCommitShaAndLanguageCode(1L, commitSha, JAVA.name())).thenReturn(Optional.of(entity));
+    }
+}
@@ -0,0 +1,111 @@
+package ru.itmo.backend.service.analysis;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import ru.itmo.backend.config.metrics.MetricsService;
+import ru.itmo.backend.dto.response.commit.BranchDTO;
+import ru.itmo.backend.dto.response.commit.CommitDTO;
+import ru.itmo.backend.entity.GitProjectEntity;
+import ru.itmo.backend.service.GitCommitService;
+import ru.itmo.backend.service.ProjectInstanceArbitrator;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class PreAnalysisServiceTest {
+
+    private CodeAnalysisService codeAnalysisService;
+    private GitCommitService gitCommitService;
+    private CommitMetricsCache metricsCache;
+    private ProjectInstanceArbitrator arbitrator;
+    private PreAnalysisService preAnalysisService;
+    private GitProjectEntity project;
+
+    @BeforeEach
+    void setup() throws Exception {
+        codeAnalysisService = mock(CodeAnalysisService.class);
+        gitCommitService = mock(GitCommitService.class);
+        metricsCache = mock(CommitMetricsCache.class);
+        arbitrator = mock(ProjectInstanceArbitrator.class);
+
+        AnalysisProperties properties = new AnalysisProperties();
+        properties.getPreAnalysis().setRetryDelayMs(10);
+        properties.getPreAnalysis().setMaxRetries(3);
+        preAnalysisService = new PreAnalysisService(codeAnalysisService, gitCommitService, metricsCache, arbitrator,
+                mock(MetricsService.class), properties);
+
+        project = new GitProjectEntity();
+        project.setId(1L);
+        project.setLanguageCode("java");
+
+        when(gitCommitService.listBranches(project)).thenReturn(List.of(
+                new BranchDTO("feature", "bbb"),
+                new BranchDTO("main", "aaa"),
+                new BranchDTO("old", "ccc"),
+                new BranchDTO("same-as-main", "aaa")));
+        when(gitCommitService.getDefaultBranch(project)).thenReturn(Optional.of("main"));
+        when(gitCommitService.getCommit(eq(project), any(), any())).thenAnswer(i ->
+                Optional.of(new CommitDTO(i.getArgument(2), "message", "author", 0L, 1)));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        preAnalysisService.close();
+    }
+
+    @Test
+    void testSchedule_AnalyzesUnevaluatedHeadsDefaultBranchFirst() throws Exception {
+        when(metricsCache.findEvaluatedCommits(eq(project), any())).thenReturn(Set.of("ccc"));
+        when(arbitrator.hasSpareInstance(1L)).thenReturn(true);
+
+        preAnalysisService.schedule(project);
+
+        InOrder order = inOrder(codeAnalysisService);
+        order.verify(codeAnalysisService, timeout(1000)).getCommitMetrics(eq(project), argThat(c -> c.sha().equals("aaa")), anyList());
+        order.verify(codeAnalysisService, timeout(1000)).getCommitMetrics(eq(project), argThat(c -> c.sha().equals("bbb")), anyList());
+        verify(codeAnalysisService, after(100).times(2)).getCommitMetrics(any(), any(), anyList());
+    }
+
+    @Test
+    void testSchedule_WaitsForSpareInstance() throws Exception {
+        when(metricsCache.findEvaluatedCommits(eq(project), any())).thenReturn(Set.of("aaa", "ccc"));
+        when(arbitrator.hasSpareInstance(1L)).thenReturn(false, false, true);
+
+        preAnalysisService.schedule(project);
+
+        verify(codeAnalysisService, timeout(1000)).getCommitMetrics(eq(project), argThat(c -> c.sha().equals("bbb")), anyList());
+        verify(arbitrator, atLeast(3)).hasSpareInstance(1L);
+    }
+
+    @Test
+    void testSchedule_WaitsForRunningEvaluations() throws Exception {
+        when(metricsCache.findEvaluatedCommits(eq(project), any())).thenReturn(Set.of("aaa", "ccc"));
+        when(arbitrator.hasSpareInstance(1L)).thenReturn(true);
+        // Checkout-free evaluations leave instances spare
+        when(codeAnalysisService.runningEvaluations()).thenReturn(2, 1, 0);
+
+        preAnalysisService.schedule(project);
+
+        verify(codeAnalysisService, timeout(1000)).getCommitMetrics(eq(project), argThat(c -> c.sha().equals("bbb")), anyList());
+        verify(codeAnalysisService, atLeast(3)).runningEvaluations();
+    }
+
+    @Test
+    void testSchedule_GivesUpWhileInstancesStayBusy() throws Exception {
+        when(metricsCache.findEvaluatedCommits(eq(project), any())).thenReturn(Set.of("aaa", "ccc"));
+        when(arbitrator.hasSpareInstance(1L)).thenReturn(false);
+
+        preAnalysisService.schedule(project);
+
+        verify(arbitrator, timeout(1000).times(4)).hasSpareInstance(1L);
+        verify(codeAnalysisService, after(100).never()).getCommitMetrics(any(), any(), anyList());
+    }
+}
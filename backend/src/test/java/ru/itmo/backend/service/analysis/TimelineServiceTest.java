@@ -0,0 +1,110 @@
+package ru.itmo.backend.service.analysis;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.itmo.backend.dto.response.analysis.TimelinePointDTO;
+import ru.itmo.backend.dto.response.commit.CommitDTO;
+import ru.itmo.backend.entity.GitProjectEntity;
+import ru.itmo.backend.evaluator.model.ClassMetric;
+import ru.itmo.backend.evaluator.model.MethodMetric;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class TimelineServiceTest {
+
+    private CodeAnalysisService codeAnalysisService;
+    private TimelineService timelineService;
+    private GitProjectEntity project;
+
+    @BeforeEach
+    void setup() {
+        codeAnalysisService = mock(CodeAnalysisService.class);
+        AnalysisProperties properties = new AnalysisProperties();
+        properties.getTimeline().setParallelism(2);
+        timelineService = new TimelineService(codeAnalysisService, properties);
+
+        project = new GitProjectEntity();
+        project.setId(1L);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        timelineService.close();
+    }
+
+    @Test
+    void testAggregate_SumsMethodMetrics() {
+        ClassMetric a = new ClassMetric("org.a.A");
+        a.methods().put("m1", method(10, 1));
+        a.methods().put("m2", method(20, 5));
+        ClassMetric b = new ClassMetric("org.b.B");
+        b.methods().put("m3", method(30, 3));
+
+        TimelinePointDTO point = TimelineService.aggregate(commit(1), Map.of("org.a.A", a, "org.b.B", b));
+
+        assertEquals(60, point.totalNloc());
+        assertEquals(3.0, point.meanCcn());
+        assertEquals(5, point.maxCcn());
+        assertEquals(3, point.methodCount());
+        assertEquals(Map.of("org.a", 2, "org.b", 1), point.methodsPerPackage());
+    }
+
+    @Test
+    void testSplit_KeepsSegmentsContiguous() {
+        List<CommitDTO> commits = IntStream.range(0, 5).mapToObj(TimelineServiceTest::commit).toList();
+
+        List<List<CommitDTO>> segments = TimelineService.split(commits, 2);
+
+        assertEquals(List.of(commits.subList(0, 2), commits.subList(2, 5)), segments);
+        assertEquals(1, TimelineService.split(commits.subList(0, 1), 4).size());
+    }
+
+    @Test
+    void testComputeTimeline_EvaluatesSegmentsOldestFirst() throws Exception {
+        List<CommitDTO> commits = IntStream.range(0, 6).mapToObj(TimelineServiceTest::commit).toList();
+        ConcurrentLinkedQueue<String> evaluated = new ConcurrentLinkedQueue<>();
+        when(codeAnalysisService.getClassMetrics(eq(project), any())).thenAnswer(i -> {
+            evaluated.add(i.getArgument(1));
+            return Map.of();
+        });
+
+        ConcurrentLinkedQueue<TimelinePointDTO> points = new ConcurrentLinkedQueue<>();
+        timelineService.computeTimeline(project, commits, points::add).get(1, TimeUnit.SECONDS);
+
+        assertEquals(6, points.size());
+        List<String> order = List.copyOf(evaluated);
+        assertTrue(order.indexOf("sha0") < order.indexOf("sha1"));
+        assertTrue(order.indexOf("sha1") < order.indexOf("sha2"));
+        assertTrue(order.indexOf("sha3") < order.indexOf("sha4"));
+        assertTrue(order.indexOf("sha4") < order.indexOf("sha5"));
+    }
+
+    @Test
+    void testComputeTimeline_FailsOnEvaluationError() throws Exception {
+        when(codeAnalysisService.getClassMetrics(eq(project), any())).thenThrow(new IllegalStateException("broken"));
+
+        ExecutionException error = assertThrows(ExecutionException.class, () ->
+                timelineService.computeTimeline(project, List.of(commit(0)), point -> {
+                }).get(1, TimeUnit.SECONDS));
+        assertEquals("broken", error.getCause().getMessage());
+    }
+
+    private static CommitDTO commit(int i) {
+        return new CommitDTO("sha" + i, "message", "author", 0L, i + 1);
+    }
+
+    private static MethodMetric method(int nloc, int ccn) {
+        return new MethodMetric("m", new int[]{nloc, ccn, 0, 0, 0}, "m", "File.java", "", null);
+    }
+}
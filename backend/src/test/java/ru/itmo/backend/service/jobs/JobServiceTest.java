@@ -0,0 +1,72 @@
+package ru.itmo.backend.service.jobs;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.itmo.backend.dto.response.job.JobDTO;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JobServiceTest {
+
+    private JobService jobService;
+
+    @BeforeEach
+    void setup() {
+        jobService = new JobService(1, 60);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        jobService.close();
+    }
+
+    @Test
+    void testSubmit_PublishesProgressAndResult() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        Job<String> job = jobService.submit("test", progress -> {
+            started.await(1, TimeUnit.SECONDS);
+            progress.report("Working", 1, 2);
+            return "done";
+        });
+
+        List<JobDTO> states = new CopyOnWriteArrayList<>();
+        CountDownLatch finished = new CountDownLatch(1);
+        job.subscribe(state -> {
+            states.add(state);
+            if (state.status().isFinished()) {
+                finished.countDown();
+            }
+        });
+        started.countDown();
+
+        assertTrue(finished.await(1, TimeUnit.SECONDS));
+        assertEquals(JobStatus.SUCCEEDED, job.getStatus());
+        assertEquals("done", job.getResult());
+        assertTrue(states.stream().anyMatch(state -> "Working".equals(state.stage()) && state.completed() == 1));
+        assertEquals(job, jobService.find(job.getId()).orElseThrow());
+    }
+
+    @Test
+    void testSubmit_ReportsFailure() throws Exception {
+        Job<String> job = jobService.submit("test", progress -> {
+            throw new IllegalStateException("broken");
+        });
+
+        CountDownLatch finished = new CountDownLatch(1);
+        job.subscribe(state -> {
+            if (state.status().isFinished()) {
+                finished.countDown();
+            }
+        });
+
+        assertTrue(finished.await(1, TimeUnit.SECONDS));
+        assertEquals(JobStatus.FAILED, job.toDto().status());
+        assertEquals("broken", job.toDto().error());
+    }
+}
@@ -0,0 +1,10 @@
+/*
+ * License header
+ */
+package test
+        // split declaration
+        .multiline /* with comments */ .name
+        ;
+
+class Main {
+}